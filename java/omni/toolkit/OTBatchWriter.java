@@ -0,0 +1,275 @@
+package omni.toolkit;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.appiancorp.suiteapi.type.TypedValue;
+
+/*
+ * Batched inserts and upserts of dictionaries into a table, in chunks of executeBatch within one transaction.
+ * Upserts use the statement of each dialect: ON CONFLICT, ON DUPLICATE KEY UPDATE or MERGE.
+ */
+public class OTBatchWriter {
+    /* Defaults */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    public static final int MAX_CHUNK_SIZE = 10000;
+
+    /* Rows of a dictionary list keyed by field name, typed values are unwrapped */
+    public static final List<Map<String, Object>> toRows(TypedValue rows) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        Object value = rows == null ? null : rows.getValue();
+        Object[] items = value instanceof Object[] ? (Object[]) value : value == null ? new Object[0]
+                : new Object[] { value };
+        for (Object item : items) {
+            Object dictionary = item instanceof TypedValue ? ((TypedValue) item).getValue() : item;
+            if (!(dictionary instanceof Map)) {
+                throw new IllegalArgumentException("Rows must be a list of dictionaries");
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) dictionary).entrySet()) {
+                Object key = OTQuery.toJdbcValue(entry.getKey());
+                row.put(String.valueOf(key), OTQuery.toJdbcValue(entry.getValue()));
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    /* Writes the rows and returns the update count of each chunk. Columns are those of the first row, key
+     * columns default to the primary key when upserting */
+    public static final long[] write(Connection conn, String tableName, List<Map<String, Object>> rows,
+            int chunkSize, boolean upsert, String[] keyColumns) throws SQLException {
+        if (rows.isEmpty()) {
+            return new long[0];
+        }
+        String dialect = OTTypeRegistry.getDialect(conn);
+        String quote = conn.getMetaData().getIdentifierQuoteString();
+
+        /* Columns of the table by upper case name */
+        Map<String, OTColumn> tableColumns = new LinkedHashMap<>();
+        ResultSet rsColumns = OTHelper.getColumnsOfTable(conn, tableName);
+        try {
+            while (rsColumns.next()) {
+                OTColumn column = OTColumn.fromResultSet(rsColumns);
+                tableColumns.put(column.getName().toUpperCase(), column);
+            }
+        } finally {
+            rsColumns.close();
+        }
+        if (tableColumns.isEmpty()) {
+            throw new IllegalArgumentException("Table " + tableName + " not found");
+        }
+
+        /* Fields of the first row, matched case insensitively */
+        Map<String, Integer> fields = new HashMap<>();
+        List<OTColumn> columns = new ArrayList<>();
+        for (String field : rows.get(0).keySet()) {
+            OTColumn column = tableColumns.get(field.toUpperCase());
+            if (column == null) {
+                throw new IllegalArgumentException("Unknown column " + field);
+            }
+            if (fields.put(field.toUpperCase(), columns.size()) != null) {
+                throw new IllegalArgumentException("Duplicate field " + field);
+            }
+            columns.add(column);
+        }
+
+        /* Every row has the same fields, a missing one would silently write null */
+        for (int r = 1; r < rows.size(); r++) {
+            Set<String> rowFields = new HashSet<>();
+            for (String field : rows.get(r).keySet()) {
+                if (!fields.containsKey(field.toUpperCase()) || !rowFields.add(field.toUpperCase())) {
+                    throw new IllegalArgumentException("Row " + (r + 1) + " has unexpected field " + field);
+                }
+            }
+            if (rowFields.size() != fields.size()) {
+                throw new IllegalArgumentException("Row " + (r + 1) + " does not have the fields of the first row");
+            }
+        }
+
+        /* Keys */
+        List<String> keys = new ArrayList<>();
+        if (upsert) {
+            String[] names = keyColumns == null || keyColumns.length == 0
+                    ? OTHelper.getPrimaryKeyColumns(conn, tableName)
+                    : keyColumns;
+            for (String name : names) {
+                OTColumn column = tableColumns.get(name.toUpperCase());
+                if (column == null || !columns.contains(column)) {
+                    throw new IllegalArgumentException("Key column " + name + " must be part of the rows");
+                }
+                keys.add(column.getName());
+            }
+            if (keys.isEmpty()) {
+                throw new IllegalArgumentException("Table " + tableName + " has no primary key, keyColumns needed");
+            }
+        }
+
+        /* One transaction for every chunk */
+        String sql = upsert ? upsertStatement(dialect, quote, tableName, columns, keys)
+                : insertStatement(quote, tableName, columns);
+        int size = chunkSize <= 0 ? DEFAULT_CHUNK_SIZE : Math.min(chunkSize, MAX_CHUNK_SIZE);
+        long[] counts = new long[(rows.size() + size - 1) / size];
+        boolean autoCommit = conn.getAutoCommit();
+        PreparedStatement ps = null;
+        try {
+            conn.setAutoCommit(false);
+            ps = conn.prepareStatement(sql);
+            for (int chunk = 0; chunk < counts.length; chunk++) {
+                int end = Math.min(rows.size(), (chunk + 1) * size);
+                for (int r = chunk * size; r < end; r++) {
+                    for (Map.Entry<String, Object> field : rows.get(r).entrySet()) {
+                        int c = fields.get(field.getKey().toUpperCase());
+                        bind(ps, c + 1, columns.get(c).getDataType(), field.getValue());
+                    }
+                    ps.addBatch();
+                }
+
+                /* Drivers may not report the rows of each statement */
+                long count = 0;
+                for (int result : ps.executeBatch()) {
+                    count += result >= 0 ? result : result == Statement.SUCCESS_NO_INFO ? 1 : 0;
+                }
+                counts[chunk] = count;
+            }
+            conn.commit();
+            return counts;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException r) {
+                e.addSuppressed(r);
+            }
+            throw e;
+        } finally {
+            if (ps != null) {
+                try {
+                    ps.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /* Binds a value with the sql type of its column */
+    private static final void bind(PreparedStatement ps, int index, int sqlType, Object value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, sqlType);
+        } else if ((sqlType == Types.BIT || sqlType == Types.BOOLEAN) && value instanceof Number) {
+            ps.setBoolean(index, ((Number) value).longValue() != 0);
+        } else {
+            ps.setObject(index, value, sqlType);
+        }
+    }
+
+    private static final String insertStatement(String quote, String tableName, List<OTColumn> columns) {
+        return "INSERT INTO " + OTKeyset.quote(quote, tableName) + " (" + columnList(quote, columns, "") + ") VALUES ("
+                + placeholders(columns.size()) + ")";
+    }
+
+    private static final String upsertStatement(String dialect, String quote, String tableName,
+            List<OTColumn> columns, List<String> keys) {
+        String table = OTKeyset.quote(quote, tableName);
+        List<String> updates = new ArrayList<>();
+        for (OTColumn column : columns) {
+            if (!keys.contains(column.getName())) {
+                updates.add(OTKeyset.quote(quote, column.getName()));
+            }
+        }
+
+        /* Insert with conflict clause */
+        if (OTTypeRegistry.POSTGRESQL.equals(dialect)) {
+            StringBuilder sql = new StringBuilder(insertStatement(quote, tableName, columns)).append(" ON CONFLICT (");
+            for (int i = 0; i < keys.size(); i++) {
+                sql.append(i == 0 ? "" : ", ").append(OTKeyset.quote(quote, keys.get(i)));
+            }
+            sql.append(updates.isEmpty() ? ") DO NOTHING" : ") DO UPDATE SET ");
+            for (int i = 0; i < updates.size(); i++) {
+                sql.append(i == 0 ? "" : ", ").append(updates.get(i)).append(" = EXCLUDED.").append(updates.get(i));
+            }
+            return sql.toString();
+        }
+        if (OTTypeRegistry.MYSQL.equals(dialect) || OTTypeRegistry.MARIADB.equals(dialect)) {
+            StringBuilder sql = new StringBuilder(insertStatement(quote, tableName, columns))
+                    .append(" ON DUPLICATE KEY UPDATE ");
+            if (updates.isEmpty()) {
+                String key = OTKeyset.quote(quote, keys.get(0));
+                return sql.append(key).append(" = ").append(key).toString();
+            }
+            for (int i = 0; i < updates.size(); i++) {
+                sql.append(i == 0 ? "" : ", ").append(updates.get(i)).append(" = VALUES(").append(updates.get(i))
+                        .append(')');
+            }
+            return sql.toString();
+        }
+
+        /* Merge */
+        String source;
+        if (OTTypeRegistry.SQLSERVER.equals(dialect) || OTTypeRegistry.DB2.equals(dialect)) {
+            source = "(VALUES (" + placeholders(columns.size()) + ")) AS src (" + columnList(quote, columns, "")
+                    + ")";
+        } else if (OTTypeRegistry.ORACLE.equals(dialect)) {
+            StringBuilder select = new StringBuilder("(SELECT ");
+            for (int i = 0; i < columns.size(); i++) {
+                select.append(i == 0 ? "" : ", ").append("? AS ")
+                        .append(OTKeyset.quote(quote, columns.get(i).getName()));
+            }
+            source = select.append(" FROM dual) src").toString();
+        } else {
+            throw new IllegalArgumentException("Upsert is not supported on " + dialect);
+        }
+        /* SQL Server only locks the key range for the whole MERGE under HOLDLOCK, otherwise two concurrent
+         * upserts of a new key both take the insert branch */
+        StringBuilder sql = new StringBuilder("MERGE INTO ").append(table);
+        if (OTTypeRegistry.SQLSERVER.equals(dialect)) {
+            sql.append(" WITH (HOLDLOCK)");
+        }
+        sql.append(OTTypeRegistry.ORACLE.equals(dialect) ? " tgt" : " AS tgt").append(" USING ").append(source)
+                .append(" ON (");
+        for (int i = 0; i < keys.size(); i++) {
+            String key = OTKeyset.quote(quote, keys.get(i));
+            sql.append(i == 0 ? "" : " AND ").append("tgt.").append(key).append(" = src.").append(key);
+        }
+        sql.append(')');
+        if (!updates.isEmpty()) {
+            sql.append(" WHEN MATCHED THEN UPDATE SET ");
+            for (int i = 0; i < updates.size(); i++) {
+                sql.append(i == 0 ? "" : ", ").append("tgt.").append(updates.get(i)).append(" = src.")
+                        .append(updates.get(i));
+            }
+        }
+        sql.append(" WHEN NOT MATCHED THEN INSERT (").append(columnList(quote, columns, "")).append(") VALUES (")
+                .append(columnList(quote, columns, "src.")).append(')');
+
+        /* SQL Server requires the terminator on MERGE */
+        return OTTypeRegistry.SQLSERVER.equals(dialect) ? sql.append(';').toString() : sql.toString();
+    }
+
+    private static final String columnList(String quote, List<OTColumn> columns, String prefix) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            sb.append(i == 0 ? "" : ", ").append(prefix).append(OTKeyset.quote(quote, columns.get(i).getName()));
+        }
+        return sb.toString();
+    }
+
+    private static final String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package omni.toolkit;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class OTColumn {
+    /* Fields read from a DatabaseMetaData.getColumns row */
+    private final String tableSchema;
+    private final String tableName;
+    private final String name;
+    private final int dataType;
+    private final String typeName;
+    private final Integer size;
+    private final boolean nullable;
+    private final boolean autoGenerated;
+
+    public OTColumn(String tableSchema, String tableName, String name, int dataType, String typeName, Integer size,
+            boolean nullable, boolean autoGenerated) {
+        this.tableSchema = tableSchema;
+        this.tableName = tableName;
+        this.name = name;
+        this.dataType = dataType;
+        this.typeName = typeName;
+        this.size = size;
+        this.nullable = nullable;
+        this.autoGenerated = autoGenerated;
+    }
+
+    /* Column from the current row of a getColumns result set */
+    public static final OTColumn fromResultSet(ResultSet rsColumns) throws SQLException {
+        String columnSize = rsColumns.getString("COLUMN_SIZE");
+        return new OTColumn(
+                rsColumns.getString("TABLE_SCHEM"),
+                rsColumns.getString("TABLE_NAME"),
+                rsColumns.getString("COLUMN_NAME"),
+                rsColumns.getInt("DATA_TYPE"),
+                rsColumns.getString("TYPE_NAME"),
+                columnSize == null ? 0 : Integer.parseInt(columnSize),
+                "yes".equalsIgnoreCase(rsColumns.getString("IS_NULLABLE")),
+                "yes".equalsIgnoreCase(rsColumns.getString("IS_GENERATEDCOLUMN"))
+                        || "yes".equalsIgnoreCase(rsColumns.getString("IS_AUTOINCREMENT")));
+    }
+
+    public String getTableSchema() {
+        return this.tableSchema;
+    }
+
+    public String getTableName() {
+        return this.tableName;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public int getDataType() {
+        return this.dataType;
+    }
+
+    public String getTypeName() {
+        return this.typeName;
+    }
+
+    public Integer getSize() {
+        return this.size;
+    }
+
+    public boolean isNullable() {
+        return this.nullable;
+    }
+
+    public boolean isAutoGenerated() {
+        return this.autoGenerated;
+    }
+}
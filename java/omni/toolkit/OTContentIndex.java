@@ -0,0 +1,159 @@
+package omni.toolkit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.appiancorp.suiteapi.content.Content;
+import com.appiancorp.suiteapi.content.ContentConstants;
+import com.appiancorp.suiteapi.content.ContentFilter;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.type.TypedValue;
+
+/*
+ * Name to ids index of the content below a set of root folders. Indexes are built per user, since what a user
+ * can see depends on the security of each object, and per set of roots. Names are case insensitive and sorted,
+ * the ids of names[i] are ids[offsets[i]] to ids[offsets[i + 1]] excluded, so that exact and prefix lookups are
+ * binary searches. Indexes are only built on the calling thread, since the content service belongs to the
+ * request, and callers answer lookups without a fresh index some other way. A refresh rebuilds the whole index,
+ * there is no change feed to apply incrementally.
+ */
+public class OTContentIndex {
+    /* Defaults */
+    public static final long DEFAULT_REFRESH_SECONDS = 300;
+    private static final long MAX_AGE_MILLIS = 24 * 3600 * 1000L;
+    private static final int MAX_INDEXES = 100;
+
+    /* Indexes by user and roots */
+    private static final OTTtlCache<OTContentIndex> CACHE = new OTTtlCache<>(MAX_INDEXES);
+
+    /* Index */
+    private final String[] names;
+    private final int[] offsets;
+    private final long[] ids;
+
+    /* Build info */
+    private final long builtAt;
+    private final long elapsedMillis;
+    private final long foldersVisited;
+    private final long serviceCalls;
+
+    private OTContentIndex(String[] names, int[] offsets, long[] ids, long builtAt, long elapsedMillis,
+            long foldersVisited, long serviceCalls) {
+        this.names = names;
+        this.offsets = offsets;
+        this.ids = ids;
+        this.builtAt = builtAt;
+        this.elapsedMillis = elapsedMillis;
+        this.foldersVisited = foldersVisited;
+        this.serviceCalls = serviceCalls;
+    }
+
+    /* Index of the user when one younger than refreshSeconds exists, null otherwise */
+    public static final OTContentIndex get(String username, Long[] rootIds, Long refreshSeconds) {
+        OTContentIndex index = CACHE.get(key(username, rootIds));
+        long refresh = refreshSeconds == null ? DEFAULT_REFRESH_SECONDS : refreshSeconds;
+        return index == null || System.currentTimeMillis() - index.builtAt > refresh * 1000 ? null : index;
+    }
+
+    /* Rebuilds the index of the user now */
+    public static final OTContentIndex refresh(ContentService cs, String username, Long[] rootIds)
+            throws Exception {
+        OTContentIndex index = build(cs, rootIds);
+        CACHE.put(key(username, rootIds), index, MAX_AGE_MILLIS);
+        return index;
+    }
+
+    /* Drops the indexes of a user, every index when null */
+    public static final long invalidate(String username) {
+        return username == null ? CACHE.invalidateAll() : CACHE.invalidatePrefix(username + "\u0000");
+    }
+
+    /* Walks the roots level by level, one call per folder whose children give both the names and the subfolders */
+    private static final OTContentIndex build(ContentService cs, Long[] rootIds) throws Exception {
+        long start = System.currentTimeMillis();
+        ContentFilter allFilter = new ContentFilter(ContentConstants.TYPE_ALL);
+        Map<String, List<Long>> entries = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        long folders = 0;
+        long calls = 0;
+
+        List<Long> level = new ArrayList<>(Arrays.asList(rootIds));
+        while (!level.isEmpty()) {
+            List<Long> next = new ArrayList<>();
+            for (Long folderId : level) {
+                Content[] children = cs.getChildren(folderId, allFilter, ContentConstants.GC_MOD_NORMAL);
+                calls++;
+                folders++;
+                for (Content child : children == null ? new Content[0] : children) {
+                    if (child.getName() != null) {
+                        entries.computeIfAbsent(child.getName(), k -> new ArrayList<>()).add(child.getId());
+                    }
+                    if (child.getType() != null && (child.getType() & ContentConstants.TYPE_FOLDER) != 0) {
+                        next.add(child.getId());
+                    }
+                }
+            }
+            level = next;
+        }
+
+        /* Flatten */
+        String[] names = new String[entries.size()];
+        int[] offsets = new int[entries.size() + 1];
+        int count = 0;
+        for (List<Long> values : entries.values()) {
+            count += values.size();
+        }
+        long[] ids = new long[count];
+        int i = 0;
+        int offset = 0;
+        for (Map.Entry<String, List<Long>> entry : entries.entrySet()) {
+            names[i] = entry.getKey();
+            offsets[i] = offset;
+            for (Long id : entry.getValue()) {
+                ids[offset++] = id;
+            }
+            i++;
+        }
+        offsets[names.length] = offset;
+        return new OTContentIndex(names, offsets, ids, System.currentTimeMillis(), System.currentTimeMillis() - start,
+                folders, calls);
+    }
+
+    /* Ids of the objects with this name, case insensitive */
+    public long[] lookup(String name) {
+        int i = Arrays.binarySearch(this.names, name, String.CASE_INSENSITIVE_ORDER);
+        return i < 0 ? new long[0] : Arrays.copyOfRange(this.ids, this.offsets[i], this.offsets[i + 1]);
+    }
+
+    /* Ids of the objects whose name starts with prefix, case insensitive, at most maxResults */
+    public long[] lookupPrefix(String prefix, int maxResults) {
+        int from = Arrays.binarySearch(this.names, prefix, String.CASE_INSENSITIVE_ORDER);
+        from = from < 0 ? -from - 1 : from;
+        int to = from;
+        while (to < this.names.length && this.names[to].regionMatches(true, 0, prefix, 0, prefix.length())) {
+            to++;
+        }
+        long end = Math.min(this.offsets[to], (long) this.offsets[from] + Math.max(0, maxResults));
+        return Arrays.copyOfRange(this.ids, this.offsets[from], (int) end);
+    }
+
+    /* Size and build info */
+    public Map<TypedValue, TypedValue> createStatsMap() {
+        Map<TypedValue, TypedValue> map = new LinkedHashMap<>();
+        map.put(OTHelper.stringTypedValue("names"), OTHelper.intTypedValue((long) this.names.length));
+        map.put(OTHelper.stringTypedValue("ids"), OTHelper.intTypedValue((long) this.ids.length));
+        map.put(OTHelper.stringTypedValue("foldersVisited"), OTHelper.intTypedValue(this.foldersVisited));
+        map.put(OTHelper.stringTypedValue("serviceCalls"), OTHelper.intTypedValue(this.serviceCalls));
+        map.put(OTHelper.stringTypedValue("elapsedMillis"), OTHelper.intTypedValue(this.elapsedMillis));
+        map.put(OTHelper.stringTypedValue("ageSeconds"),
+                OTHelper.intTypedValue((System.currentTimeMillis() - this.builtAt) / 1000));
+        return map;
+    }
+
+    private static final String key(String username, Long[] rootIds) {
+        return username + "\u0000" + Arrays.toString(rootIds);
+    }
+}
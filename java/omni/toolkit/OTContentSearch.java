@@ -0,0 +1,108 @@
+package omni.toolkit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.appiancorp.suiteapi.content.ContentConstants;
+import com.appiancorp.suiteapi.content.ContentFilter;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.type.TypedValue;
+
+/*
+ * Breadth-first search of content below a folder, on the calling thread since the content service belongs to the
+ * request. Each level is listed folder by folder, one call for the matches and one for the subfolders. Subfolders
+ * are not listed on the last level, nor on a level with matches when only the first folder with matches is wanted.
+ */
+public class OTContentSearch {
+    /* Limits */
+    public static final int DEFAULT_MAX_DEPTH = 32;
+
+    /* Result */
+    private final List<Long> ids = new ArrayList<>();
+    private long foldersVisited;
+    private long serviceCalls;
+    private long elapsedMillis;
+    private int depth;
+
+    private OTContentSearch() {
+    }
+
+    public Long[] getIds() {
+        return this.ids.toArray(new Long[0]);
+    }
+
+    /* Traversal stats */
+    public Map<TypedValue, TypedValue> createStatsMap() {
+        Map<TypedValue, TypedValue> map = new LinkedHashMap<>();
+        map.put(OTHelper.stringTypedValue("foldersVisited"), OTHelper.intTypedValue(this.foldersVisited));
+        map.put(OTHelper.stringTypedValue("serviceCalls"), OTHelper.intTypedValue(this.serviceCalls));
+        map.put(OTHelper.stringTypedValue("depth"), OTHelper.intTypedValue((long) this.depth));
+        map.put(OTHelper.stringTypedValue("elapsedMillis"), OTHelper.intTypedValue(this.elapsedMillis));
+        return map;
+    }
+
+    /* Searches below rootId, the root being depth 0. With findAll every match up to maxDepth is returned, otherwise
+     * the matches of the first folder, in level order, that has any */
+    public static final OTContentSearch search(ContentService cs, ContentFilter contentFilter, Long rootId,
+            int maxDepth, boolean findAll) throws Exception {
+        long start = System.currentTimeMillis();
+        OTContentSearch search = new OTContentSearch();
+        ContentFilter folderFilter = new ContentFilter(ContentConstants.TYPE_FOLDER);
+
+        /* Level by level */
+        List<Long> level = Arrays.asList(rootId);
+        for (int depth = 0; !level.isEmpty() && depth <= maxDepth; depth++) {
+            search.depth = depth;
+            Long[][] matches = new Long[level.size()][];
+            Long[][] subfolders = new Long[level.size()][];
+            boolean listSubfolders = depth < maxDepth;
+
+            /* Both listings in one pass when every match is wanted, otherwise subfolders only without matches */
+            search.visit(cs, contentFilter, folderFilter, level, true, findAll && listSubfolders, matches,
+                    subfolders);
+            if (!findAll && listSubfolders && Arrays.stream(matches).allMatch(m -> m.length == 0)) {
+                search.visit(cs, contentFilter, folderFilter, level, false, true, matches, subfolders);
+            }
+
+            /* Matches in level order */
+            List<Long> next = new ArrayList<>();
+            for (int i = 0; i < level.size(); i++) {
+                if (matches[i].length > 0) {
+                    search.ids.addAll(Arrays.asList(matches[i]));
+                    if (!findAll) {
+                        search.elapsedMillis = System.currentTimeMillis() - start;
+                        return search;
+                    }
+                }
+                if (subfolders[i] != null) {
+                    next.addAll(Arrays.asList(subfolders[i]));
+                }
+            }
+            level = next;
+        }
+        search.elapsedMillis = System.currentTimeMillis() - start;
+        return search;
+    }
+
+    /* Lists the folders of a level */
+    private void visit(ContentService cs, ContentFilter contentFilter, ContentFilter folderFilter, List<Long> level,
+            boolean listMatches, boolean listSubfolders, Long[][] matches, Long[][] subfolders) throws Exception {
+        for (int i = 0; i < level.size(); i++) {
+            Long folderId = level.get(i);
+            if (listMatches) {
+                Long[] found = cs.getChildrenIds(folderId, contentFilter, ContentConstants.GC_MOD_NORMAL);
+                matches[i] = found == null ? new Long[0] : found;
+                this.serviceCalls++;
+                this.foldersVisited++;
+            }
+            if (listSubfolders) {
+                Long[] children = cs.getChildrenIds(folderId, folderFilter, ContentConstants.GC_MOD_NORMAL);
+                subfolders[i] = children == null ? new Long[0] : children;
+                this.serviceCalls++;
+            }
+        }
+    }
+}
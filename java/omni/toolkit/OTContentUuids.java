@@ -0,0 +1,96 @@
+package omni.toolkit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.appiancorp.suiteapi.content.Content;
+import com.appiancorp.suiteapi.content.ContentConstants;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.type.TypedValue;
+
+/*
+ * Uuid to id mappings of content, in both directions. An object keeps its id and uuid for its whole life, so
+ * entries do not expire and are evicted by size, but a re-imported object comes back with its uuid and a new id:
+ * getContent drops an entry whose id no longer reads as the uuid, and invalidate drops entries on demand. The
+ * cache is shared by every user, so a hit skips the rights check of the content service: public functions only
+ * use it before a read that checks rights anyway, getUuid is meant for the create and add to application paths,
+ * on objects the caller just created or saves.
+ */
+public class OTContentUuids {
+    /* Bounds */
+    private static final int MAX_ENTRIES = 20000;
+
+    /* Caches */
+    private static final OTTtlCache<Long> IDS = new OTTtlCache<>(MAX_ENTRIES);
+    private static final OTTtlCache<String> UUIDS = new OTTtlCache<>(MAX_ENTRIES);
+
+    /* Current version of the content with this uuid, a cached id that fails to read or reads as another object is
+     * dropped and resolved again */
+    public static final Content getContent(ContentService cs, String uuid) throws Exception {
+        Long id = IDS.get(uuid);
+        if (id != null) {
+            try {
+                Content content = cs.getVersion(id, ContentConstants.VERSION_CURRENT);
+                if (content != null && uuid.equals(content.getUuid())) {
+                    return content;
+                }
+            } catch (Exception e) {
+                /* Stale id, resolved below */
+            }
+            invalidate(uuid);
+        }
+        Content content = cs.getVersion(cs.getIdByUuid(uuid), ContentConstants.VERSION_CURRENT);
+        put(content);
+        return content;
+    }
+
+    /* Uuid of the id */
+    public static final String getUuid(ContentService cs, Long id) throws Exception {
+        String uuid = UUIDS.get(String.valueOf(id));
+        if (uuid == null) {
+            uuid = cs.getVersion(id, ContentConstants.VERSION_CURRENT).getUuid();
+            put(id, uuid);
+        }
+        return uuid;
+    }
+
+    /* Content just read or created, its uuid is recorded when the object carries it */
+    public static final void put(Content content) {
+        if (content != null) {
+            put(content.getId(), content.getUuid());
+        }
+    }
+
+    public static final void put(Long id, String uuid) {
+        if (id != null && uuid != null) {
+            IDS.put(uuid, id, 0);
+            UUIDS.put(String.valueOf(id), uuid, 0);
+        }
+    }
+
+    /* Drops the mappings of a uuid, every mapping when null, returns the number of dropped entries */
+    public static final long invalidate(String uuid) {
+        if (uuid == null) {
+            return IDS.invalidateAll() + UUIDS.invalidateAll();
+        }
+        Long id = IDS.get(uuid);
+        long count = IDS.invalidate(uuid) ? 1 : 0;
+        if (id != null && uuid.equals(UUIDS.get(String.valueOf(id))) && UUIDS.invalidate(String.valueOf(id))) {
+            count++;
+        }
+        return count;
+    }
+
+    /* Hits, misses, evictions and size of each direction */
+    public static final Map<TypedValue, TypedValue> createStatsMap() {
+        Map<TypedValue, TypedValue> map = new LinkedHashMap<>();
+        map.put(OTHelper.stringTypedValue("idHits"), OTHelper.intTypedValue(IDS.getHits()));
+        map.put(OTHelper.stringTypedValue("idMisses"), OTHelper.intTypedValue(IDS.getMisses()));
+        map.put(OTHelper.stringTypedValue("uuidHits"), OTHelper.intTypedValue(UUIDS.getHits()));
+        map.put(OTHelper.stringTypedValue("uuidMisses"), OTHelper.intTypedValue(UUIDS.getMisses()));
+        map.put(OTHelper.stringTypedValue("evictions"),
+                OTHelper.intTypedValue(IDS.getEvictions() + UUIDS.getEvictions()));
+        map.put(OTHelper.stringTypedValue("size"), OTHelper.intTypedValue((long) UUIDS.size()));
+        return map;
+    }
+}
@@ -0,0 +1,140 @@
+package omni.toolkit;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+public class OTDataSourceCache {
+    /* Window during which a failed name is not looked up again */
+    public static final long NEGATIVE_TTL_MILLIS = 5000;
+
+    /* Resolved handle, or the failure of the last lookup */
+    private static final class Entry {
+        private final DataSource handle;
+        private final String error;
+        private final long expiresAt;
+
+        private Entry(DataSource handle, String error, long expiresAt) {
+            this.handle = handle;
+            this.error = error;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /* Timings of a data source */
+    private static final class Stats {
+        private final LongAdder lookups = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder connections = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+    }
+
+    /* Handles keyed by jndi name */
+    private static final ConcurrentHashMap<String, Entry> HANDLES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Stats> STATS = new ConcurrentHashMap<>();
+
+    /* Returns the cached handle, looks it up on a miss */
+    public static final DataSource getDataSource(Context ctx, String dataSource) throws NamingException {
+        Stats stats = stats(dataSource);
+        Entry entry = HANDLES.get(dataSource);
+        if (entry != null) {
+            if (entry.handle != null) {
+                stats.hits.increment();
+                return entry.handle;
+            }
+            if (entry.expiresAt > System.currentTimeMillis()) {
+                stats.hits.increment();
+                throw new NamingException(entry.error);
+            }
+            HANDLES.remove(dataSource, entry);
+        }
+
+        /* Lookup, failures are remembered for a short while */
+        stats.lookups.increment();
+        try {
+            DataSource handle = (DataSource) ctx.lookup(dataSource);
+            HANDLES.put(dataSource, new Entry(handle, null, 0));
+            return handle;
+        } catch (NamingException e) {
+            HANDLES.put(dataSource, new Entry(null, e.getMessage(),
+                    System.currentTimeMillis() + NEGATIVE_TTL_MILLIS));
+            throw e;
+        }
+    }
+
+    /* Opens a connection through the cached handle */
+    public static final Connection getConnection(Context ctx, String dataSource) throws SQLException, NamingException {
+        return getConnection(getDataSource(ctx, dataSource), dataSource);
+    }
+
+    /* Opens a connection on an already resolved handle, a failure drops the handle so that the next call looks it
+     * up again */
+    public static final Connection getConnection(DataSource handle, String dataSource) throws SQLException {
+        Stats stats = stats(dataSource);
+        long start = System.nanoTime();
+        try {
+            Connection conn = handle.getConnection();
+            long elapsed = System.nanoTime() - start;
+            stats.connections.increment();
+            stats.totalNanos.add(elapsed);
+            stats.maxNanos.accumulateAndGet(elapsed, Math::max);
+            return conn;
+        } catch (SQLException e) {
+            stats.failures.increment();
+            HANDLES.computeIfPresent(dataSource, (k, v) -> v.handle == handle ? null : v);
+            throw e;
+        }
+    }
+
+    /* Drops a handle, every handle when null, and returns the number of dropped entries */
+    public static final long invalidate(String dataSource) {
+        if (dataSource == null) {
+            long removed = HANDLES.size();
+            HANDLES.clear();
+            return removed;
+        }
+        return HANDLES.remove(dataSource) != null ? 1 : 0;
+    }
+
+    private static final Stats stats(String dataSource) {
+        return STATS.computeIfAbsent(dataSource, k -> new Stats());
+    }
+
+    /* One map per data source, sorted by name */
+    public static final Map<?, ?>[] createStatsMaps() {
+        List<Map<?, ?>> result = new ArrayList<>();
+        for (Map.Entry<String, Stats> e : new TreeMap<>(STATS).entrySet()) {
+            Stats stats = e.getValue();
+            Entry entry = HANDLES.get(e.getKey());
+            long connections = stats.connections.sum();
+            Map<Object, Object> map = new LinkedHashMap<>();
+            map.put(OTHelper.stringTypedValue("dataSource"), OTHelper.stringTypedValue(e.getKey()));
+            map.put(OTHelper.stringTypedValue("cached"), OTHelper.booleanTypedValue(entry != null
+                    && entry.handle != null));
+            map.put(OTHelper.stringTypedValue("lookups"), OTHelper.intTypedValue(stats.lookups.sum()));
+            map.put(OTHelper.stringTypedValue("hits"), OTHelper.intTypedValue(stats.hits.sum()));
+            map.put(OTHelper.stringTypedValue("connections"), OTHelper.intTypedValue(connections));
+            map.put(OTHelper.stringTypedValue("failures"), OTHelper.intTypedValue(stats.failures.sum()));
+            map.put(OTHelper.stringTypedValue("totalMillis"),
+                    OTHelper.intTypedValue(stats.totalNanos.sum() / 1000000));
+            map.put(OTHelper.stringTypedValue("averageMillis"),
+                    OTHelper.intTypedValue(connections == 0 ? 0 : stats.totalNanos.sum() / connections / 1000000));
+            map.put(OTHelper.stringTypedValue("maxMillis"), OTHelper.intTypedValue(stats.maxNanos.get() / 1000000));
+            result.add(map);
+        }
+        return result.toArray(new Map[0]);
+    }
+}
@@ -0,0 +1,119 @@
+package omni.toolkit;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
+
+import com.appiancorp.services.ServiceContext;
+import com.appiancorp.suiteapi.type.Datatype;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.config.ImportResult;
+import com.appiancorp.suiteapi.type.config.xsd.XsdTypeImporter;
+
+/*
+ * Imports generated xsds only when they differ from the last import of the same type. The fingerprint is the
+ * sha-256 of the xsd bytes, stored per qualified name along with the ids returned by the import.
+ */
+public class OTDataTypeSync {
+    /* Outcome of a sync */
+    public static final class Result {
+        private final Long[] typeIds;
+        private final boolean changed;
+        private final String fingerprint;
+
+        private Result(Long[] typeIds, boolean changed, String fingerprint) {
+            this.typeIds = typeIds;
+            this.changed = changed;
+            this.fingerprint = fingerprint;
+        }
+
+        public Long[] getTypeIds() {
+            return this.typeIds;
+        }
+
+        public boolean isChanged() {
+            return this.changed;
+        }
+
+        public String getFingerprint() {
+            return this.fingerprint;
+        }
+    }
+
+    /* Last import per {namespace}name, names of a batch are joined by commas */
+    private static final ConcurrentHashMap<String, Result> IMPORTS = new ConcurrentHashMap<>();
+
+    /* Imports the xsd unless the same bytes were imported last time and the type still has the same id */
+    public static final Result sync(TypeService ts, ServiceContext sc, byte[] xsd, String targetNamespace,
+            String name, boolean force) throws Exception {
+        return sync(ts, sc, xsd, targetNamespace, new String[] { name }, force);
+    }
+
+    /* Same as above for an xsd holding several types */
+    public static final Result sync(TypeService ts, ServiceContext sc, byte[] xsd, String targetNamespace,
+            String[] names, boolean force) throws Exception {
+        String key = new QName(targetNamespace, String.join(",", names)).toString();
+        String fingerprint = fingerprint(xsd);
+        OTSnapshotStore.load();
+
+        /* Unchanged */
+        Result last = IMPORTS.get(key);
+        if (!force && last != null && last.fingerprint.equals(fingerprint)
+                && isCurrent(ts, targetNamespace, names, last.typeIds)) {
+            return new Result(last.typeIds, false, fingerprint);
+        }
+
+        /* Import */
+        ImportResult ir = XsdTypeImporter.importFromStream(new ByteArrayInputStream(xsd), true, sc);
+        Long[] typeIds = Arrays.stream(ir.getNewDatatypes()).map(d -> d.getId()).toArray(Long[]::new);
+        Result result = new Result(typeIds, true, fingerprint);
+        if (typeIds.length > 0) {
+            IMPORTS.put(key, result);
+            OTSnapshotStore.markDirty();
+        }
+        return result;
+    }
+
+    /* Last imports by key, for the snapshot file */
+    public static final Map<String, Result> entries() {
+        return new HashMap<>(IMPORTS);
+    }
+
+    /* Import read from the snapshot file, a later import in this run wins */
+    public static final void restore(String key, String fingerprint, Long[] typeIds) {
+        IMPORTS.putIfAbsent(key, new Result(typeIds, false, fingerprint));
+    }
+
+    /* The types may have been replaced by another import since */
+    private static final boolean isCurrent(TypeService ts, String targetNamespace, String[] names, Long[] typeIds) {
+        List<Long> ids = Arrays.asList(typeIds);
+        try {
+            for (String name : names) {
+                Datatype dt = ts.getTypeByQualifiedName(new QName(targetNamespace, name));
+                if (dt == null || !ids.contains(dt.getId())) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /* Hex sha-256 */
+    public static final String fingerprint(byte[] bytes) throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,277 @@
+package omni.toolkit;
+
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.appiancorp.suiteapi.applications.Application;
+import com.appiancorp.suiteapi.applications.ApplicationService;
+import com.appiancorp.suiteapi.applications.ApplicationsFolder;
+import com.appiancorp.suiteapi.content.Content;
+import com.appiancorp.suiteapi.content.ContentConstants;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.knowledge.KnowledgeFolder;
+import com.appiancorp.suiteapi.rules.Constant;
+import com.appiancorp.suiteapi.rules.FreeformRule;
+import com.appiancorp.suiteapi.rules.RulesFolder;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+import com.appiancorp.type.AppianTypeLong;
+
+/*
+ * Creates many design objects from a list of dictionaries with the fields:
+ *
+ *   type         rulesFolder, knowledgeFolder, applicationsFolder, constant, ruleExpression or interface
+ *   name, description
+ *   key          reference for parentKey of other objects, the name by default; unique when given or referenced
+ *   parent       id of an existing folder, or
+ *   parentKey    key of a folder created in the same call
+ *   definition   rule or interface definition
+ *   ruleInputs   rule or interface inputs, as in otCreateRuleExpression
+ *   value        constant value
+ *   application  application to add the object to, the default application otherwise
+ *
+ * Every definition is checked before the first create. Objects are created parents first and every application is
+ * saved once with all of its objects, also when a create fails half way so that the objects created so far are not
+ * left out of it; the result then holds the ids created so far and the error.
+ */
+public class OTDesignObjects {
+    /* Types */
+    public static final String RULES_FOLDER = "rulesFolder";
+    public static final String KNOWLEDGE_FOLDER = "knowledgeFolder";
+    public static final String APPLICATIONS_FOLDER = "applicationsFolder";
+    public static final String CONSTANT = "constant";
+    public static final String RULE_EXPRESSION = "ruleExpression";
+    public static final String INTERFACE = "interface";
+
+    /* Created objects in input order, null when not created */
+    private final Long[] ids;
+    private final String[] uuids;
+    private Exception error;
+
+    private OTDesignObjects(int size) {
+        this.ids = new Long[size];
+        this.uuids = new String[size];
+    }
+
+    public Long[] getIds() {
+        return this.ids;
+    }
+
+    public String[] getUuids() {
+        return this.uuids;
+    }
+
+    /* Failure of a create or of an application save, null when everything was created and saved */
+    public Exception getError() {
+        return this.error;
+    }
+
+    /* Creates the objects and saves each application once, invalid definitions throw before anything is created */
+    public static final OTDesignObjects create(ContentService cs, ApplicationService as, TypeService ts,
+            TypedValue definitions, Long application) {
+        List<Map<String, Object>> items = toItems(definitions);
+        for (Map<String, Object> item : items) {
+            validate(item);
+        }
+        List<Integer> order = order(items);
+        OTDesignObjects result = new OTDesignObjects(items.size());
+        Map<Long, List<String>> applications = new LinkedHashMap<>();
+        Map<String, Long> created = new HashMap<>();
+
+        try {
+            for (int i : order) {
+                Map<String, Object> item = items.get(i);
+                Long parent = item.get("parentKey") != null ? created.get(text(item, "parentKey"))
+                        : id(item, "parent");
+                Content content = toContent(ts, item, parent);
+                Long id = cs.create(content, ContentConstants.UNIQUE_FOR_ALL);
+                OTContentUuids.put(id, content.getUuid());
+                result.ids[i] = id;
+                result.uuids[i] = OTContentUuids.getUuid(cs, id);
+                created.put(key(item), id);
+
+                /* Application of the object */
+                Long target = item.get("application") != null ? id(item, "application") : application;
+                if (target != null) {
+                    applications.computeIfAbsent(target, k -> new ArrayList<>()).add(result.uuids[i]);
+                }
+            }
+        } catch (Exception e) {
+            result.error = e;
+        }
+
+        /* One save per application, a failed save does not hide the create error */
+        for (Map.Entry<Long, List<String>> entry : applications.entrySet()) {
+            try {
+                Application appInstance = as.getApplication(entry.getKey());
+                appInstance.addObjectsByType(AppianTypeLong.CONTENT_ITEM, entry.getValue().toArray(new String[0]));
+                as.save(appInstance);
+            } catch (Exception e) {
+                if (result.error == null) {
+                    result.error = e;
+                } else {
+                    result.error.addSuppressed(e);
+                }
+            }
+        }
+        return result;
+    }
+
+    /* Type, name and parent of a definition */
+    private static final void validate(Map<String, Object> item) {
+        String type = text(item, "type");
+        String name = text(item, "name");
+        if (name == null || (item.get("parent") == null && item.get("parentKey") == null)) {
+            throw new IllegalArgumentException("name and parent or parentKey are required for " + name);
+        }
+        if (!RULES_FOLDER.equals(type) && !KNOWLEDGE_FOLDER.equals(type) && !APPLICATIONS_FOLDER.equals(type)
+                && !CONSTANT.equals(type) && !RULE_EXPRESSION.equals(type) && !INTERFACE.equals(type)) {
+            throw new IllegalArgumentException("Unknown type " + type + " for " + name);
+        }
+        if (item.get("parent") != null) {
+            id(item, "parent");
+        }
+        typed(item, "value");
+        typed(item, "ruleInputs");
+    }
+
+    /* Indexes with every parentKey before its children, keys must be unique when given or referenced */
+    private static final List<Integer> order(List<Map<String, Object>> items) {
+        Set<String> referenced = new HashSet<>();
+        for (Map<String, Object> item : items) {
+            if (item.get("parentKey") != null) {
+                referenced.add(text(item, "parentKey"));
+            }
+        }
+        Map<String, Integer> keys = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            String key = key(items.get(i));
+            if ((items.get(i).get("key") != null || referenced.contains(key)) && keys.put(key, i) != null) {
+                throw new IllegalArgumentException("Duplicate key " + key);
+            }
+        }
+
+        /* Children by parent index, roots in input order */
+        Map<Integer, List<Integer>> children = new HashMap<>();
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < items.size(); i++) {
+            String parentKey = text(items.get(i), "parentKey");
+            if (parentKey == null) {
+                ready.add(i);
+            } else if (keys.containsKey(parentKey)) {
+                String parentType = text(items.get(keys.get(parentKey)), "type");
+                if (!RULES_FOLDER.equals(parentType) && !KNOWLEDGE_FOLDER.equals(parentType)
+                        && !APPLICATIONS_FOLDER.equals(parentType)) {
+                    throw new IllegalArgumentException("parentKey " + parentKey + " is not a folder");
+                }
+                children.computeIfAbsent(keys.get(parentKey), k -> new ArrayList<>()).add(i);
+            } else {
+                throw new IllegalArgumentException("Unknown parentKey " + parentKey);
+            }
+        }
+
+        /* Breadth-first from the roots, items left over are in a cycle */
+        List<Integer> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            int i = ready.poll();
+            order.add(i);
+            ready.addAll(children.getOrDefault(i, new ArrayList<>()));
+        }
+        if (order.size() != items.size()) {
+            throw new IllegalArgumentException("parentKey references form a cycle");
+        }
+        return order;
+    }
+
+    /* Object of the definition, not created yet */
+    private static final Content toContent(TypeService ts, Map<String, Object> item, Long parent) {
+        String type = text(item, "type");
+        String name = text(item, "name");
+        String description = text(item, "description");
+        if (parent == null || name == null) {
+            throw new IllegalArgumentException("name and parent or parentKey are required for " + name);
+        }
+
+        Content content;
+        if (RULES_FOLDER.equals(type)) {
+            content = new RulesFolder();
+        } else if (KNOWLEDGE_FOLDER.equals(type)) {
+            content = new KnowledgeFolder();
+        } else if (APPLICATIONS_FOLDER.equals(type)) {
+            content = new ApplicationsFolder();
+        } else if (CONSTANT.equals(type)) {
+            Constant cons = new Constant();
+            cons.setTypedValue(typed(item, "value"));
+            content = cons;
+        } else if (RULE_EXPRESSION.equals(type) || INTERFACE.equals(type)) {
+            FreeformRule freeFormRule = OTHelper.createFreeFormRule(ts, name, description,
+                    text(item, "definition"), parent, typed(item, "ruleInputs"));
+            if (freeFormRule == null) {
+                throw new IllegalArgumentException("Invalid definition or ruleInputs for " + name);
+            }
+            freeFormRule.setSubtype(RULE_EXPRESSION.equals(type) ? ContentConstants.SUBTYPE_RULE_FREEFORM
+                    : ContentConstants.SUBTYPE_RULE_INTERFACE);
+            return freeFormRule;
+        } else {
+            throw new IllegalArgumentException("Unknown type " + type + " for " + name);
+        }
+        content.setName(name);
+        content.setDescription(description);
+        content.setParent(parent);
+        content.setSecurity(ContentConstants.SEC_INH_ALL);
+        return content;
+    }
+
+    /* Dictionaries with string keys, values unwrapped except value and ruleInputs */
+    private static final List<Map<String, Object>> toItems(TypedValue definitions) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        Object value = definitions == null ? null : definitions.getValue();
+        Object[] entries = value instanceof Object[] ? (Object[]) value : value == null ? new Object[0]
+                : new Object[] { value };
+        for (Object entry : entries) {
+            Object dictionary = entry instanceof TypedValue ? ((TypedValue) entry).getValue() : entry;
+            if (!(dictionary instanceof Map)) {
+                throw new IllegalArgumentException("Definitions must be a list of dictionaries");
+            }
+            Map<String, Object> item = new HashMap<>();
+            for (Map.Entry<?, ?> field : ((Map<?, ?>) dictionary).entrySet()) {
+                String name = String.valueOf(OTQuery.toJdbcValue(field.getKey()));
+                item.put(name, name.equals("value") || name.equals("ruleInputs") ? field.getValue()
+                        : OTQuery.toJdbcValue(field.getValue()));
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    /* Reference of an item for parentKey */
+    private static final String key(Map<String, Object> item) {
+        return item.get("key") != null ? text(item, "key") : text(item, "name");
+    }
+
+    private static final String text(Map<String, Object> item, String field) {
+        Object value = item.get(field);
+        return value == null ? null : String.valueOf(value);
+    }
+
+    private static final Long id(Map<String, Object> item, String field) {
+        Object value = item.get(field);
+        return value == null ? null
+                : value instanceof Number ? (Long) ((Number) value).longValue() : Long.valueOf(value.toString());
+    }
+
+    private static final TypedValue typed(Map<String, Object> item, String field) {
+        Object value = item.get(field);
+        if (value != null && !(value instanceof TypedValue)) {
+            throw new IllegalArgumentException(field + " must be a typed value");
+        }
+        return (TypedValue) value;
+    }
+}
@@ -0,0 +1,187 @@
+package omni.toolkit;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Reads part of a document file without loading the rest. Byte ranges are read from the file channel into a
+ * buffer and decoded up to the last whole character, a character cut by the end of the range is left for the next
+ * range. Lines are streamed through a decoder, lines before the start are skipped without being kept. Bytes that
+ * do not decode become the replacement character.
+ */
+public class OTDocumentReader {
+    /* Limits */
+    public static final int DEFAULT_LENGTH = 1024 * 1024;
+    public static final int MAX_LENGTH = 8 * 1024 * 1024;
+    public static final int DEFAULT_MAX_LINES = 1000;
+    public static final int MAX_LINES = 10000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_CHAR_BYTES = 8;
+
+    /* Text of a byte range */
+    public static final class Range {
+        private final String content;
+        private final long offset;
+        private final int length;
+        private final long size;
+
+        private Range(String content, long offset, int length, long size) {
+            this.content = content;
+            this.offset = offset;
+            this.length = length;
+            this.size = size;
+        }
+
+        public String getContent() {
+            return this.content;
+        }
+
+        public long getOffset() {
+            return this.offset;
+        }
+
+        /* Bytes decoded, the next range starts at offset + length */
+        public int getLength() {
+            return this.length;
+        }
+
+        /* Size of the file */
+        public long getSize() {
+            return this.size;
+        }
+
+        public boolean isEof() {
+            return this.offset + this.length >= this.size;
+        }
+    }
+
+    /* Lines read from a 1 based start line */
+    public static final class Lines {
+        private final List<String> lines;
+        private final long startLine;
+        private final boolean eof;
+
+        private Lines(List<String> lines, long startLine, boolean eof) {
+            this.lines = lines;
+            this.startLine = startLine;
+            this.eof = eof;
+        }
+
+        public List<String> getLines() {
+            return this.lines;
+        }
+
+        public long getStartLine() {
+            return this.startLine;
+        }
+
+        public long getNextLine() {
+            return this.startLine + this.lines.size();
+        }
+
+        public boolean isEof() {
+            return this.eof;
+        }
+    }
+
+    /* Reads at most length bytes from offset */
+    public static final Range readRange(String path, long offset, int length, String charset) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("offset and length must not be negative");
+        }
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            int count = (int) Math.max(0, Math.min(Math.min(length, MAX_LENGTH), size - offset));
+            ByteBuffer buffer = read(channel, offset, count);
+
+            /* Whole characters only, the bytes of a character cut by the end are left for the next range */
+            CharsetDecoder decoder = decoder(charset);
+            CharBuffer text = decode(decoder, buffer, offset + buffer.remaining() >= size);
+            if (buffer.position() == 0 && buffer.hasRemaining()) {
+                /* Shorter than its first character, widened to hold it */
+                buffer = read(channel, offset, (int) Math.min(count + MAX_CHAR_BYTES, size - offset));
+                text = decode(decoder.reset(), buffer, offset + buffer.remaining() >= size);
+                if (buffer.position() == 0) {
+                    /* Not a character, replaced */
+                    text = decode(decoder.reset(), buffer, true);
+                }
+            }
+            return new Range(text.toString(), offset, buffer.position(), size);
+        } finally {
+            file.close();
+        }
+    }
+
+    /* Decodes what the buffer holds of whole characters, everything when isLast */
+    private static final CharBuffer decode(CharsetDecoder decoder, ByteBuffer buffer, boolean isLast) {
+        CharBuffer text = CharBuffer.allocate((int) Math.ceil(buffer.remaining() * decoder.maxCharsPerByte()) + 1);
+        decoder.decode(buffer, text, isLast);
+        if (isLast) {
+            decoder.flush(text);
+        }
+        text.flip();
+        return text;
+    }
+
+    /* Reads count bytes from offset, fewer at the end of the file */
+    private static final ByteBuffer read(FileChannel channel, long offset, int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(count);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) == -1) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /* Reads at most maxLines lines from startLine, the first line being 1 */
+    public static final Lines readLines(String path, long startLine, int maxLines, String charset)
+            throws IOException {
+        if (startLine < 1 || maxLines < 0) {
+            throw new IllegalArgumentException("startLine must be at least 1 and maxLines not negative");
+        }
+        int limit = Math.min(maxLines, MAX_LINES);
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            BufferedReader reader = new BufferedReader(Channels.newReader(file.getChannel(), decoder(charset), -1),
+                    BUFFER_SIZE);
+
+            /* Skip */
+            for (long line = 1; line < startLine; line++) {
+                if (reader.readLine() == null) {
+                    return new Lines(new ArrayList<>(), startLine, true);
+                }
+            }
+
+            /* Lines, then one character ahead to tell the end of the file */
+            List<String> lines = new ArrayList<>();
+            String line;
+            while (lines.size() < limit && (line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            return new Lines(lines, startLine, lines.size() < limit || reader.read() == -1);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static final CharsetDecoder decoder(String charset) {
+        Charset encoding = charset == null || charset.isEmpty() ? StandardCharsets.UTF_8 : Charset.forName(charset);
+        return encoding.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+}
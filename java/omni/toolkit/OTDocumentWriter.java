@@ -0,0 +1,150 @@
+package omni.toolkit;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Enumeration;
+import java.util.Iterator;
+
+import com.appiancorp.suiteapi.content.ContentConstants;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.ContentUploadOutputStream;
+import com.appiancorp.suiteapi.knowledge.Document;
+
+/*
+ * Writes the content of a new document straight to the upload stream, from exactly one source: a string, a list
+ * of text lines, a list of base64 chunks or an existing document. Text is encoded with an explicit charset, utf-8
+ * by default, and bytes go through a fixed size buffer so the payload is never held twice in memory.
+ */
+public class OTDocumentWriter {
+    /* Copy buffer */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /* Uploads the document and returns its id */
+    public static final Long upload(ContentService cs, Document doc, String content, String[] lines,
+            String[] base64Chunks, Long sourceDocumentId, String charset) throws Exception {
+        int sources = (content != null ? 1 : 0) + (lines != null ? 1 : 0) + (base64Chunks != null ? 1 : 0)
+                + (sourceDocumentId != null ? 1 : 0);
+        if (sources != 1) {
+            throw new IllegalArgumentException(
+                    "Exactly one source is required: content, lines, base64 chunks or a source document");
+        }
+        Charset encoding = charset == null || charset.isEmpty() ? StandardCharsets.UTF_8 : Charset.forName(charset);
+
+        /* Source document is opened and base64 checked first so that bad input creates nothing */
+        InputStream in = null;
+        if (sourceDocumentId != null) {
+            in = new FileInputStream(cs.getInternalFilename(sourceDocumentId));
+        } else if (base64Chunks != null) {
+            validateBase64(base64Chunks);
+            in = Base64.getDecoder().wrap(chunks(base64Chunks));
+        }
+
+        ContentUploadOutputStream out = null;
+        try {
+            out = cs.uploadDocument(doc, ContentConstants.UNIQUE_FOR_ALL);
+            if (in != null) {
+                copy(in, out);
+            } else {
+                Writer writer = new OutputStreamWriter(out, encoding);
+                if (content != null) {
+                    writer.write(content);
+                } else {
+                    for (String line : lines) {
+                        writer.write(line == null ? "" : line);
+                        writer.write('\n');
+                    }
+                }
+                writer.flush();
+            }
+            out.flush();
+            out.close();
+        } catch (Exception e) {
+            /* A copy that fails half way leaves no truncated document behind */
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException c) {
+                    e.addSuppressed(c);
+                }
+                if (out.getContentId() != null) {
+                    try {
+                        cs.delete(out.getContentId(), true);
+                    } catch (Exception d) {
+                        e.addSuppressed(d);
+                    }
+                }
+            }
+            throw e;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    /* Ignored */}
+            }
+        }
+        return out.getContentId();
+    }
+
+    /* Base64 alphabet only, padding at the very end, whitespace is skipped */
+    private static final void validateBase64(String[] base64Chunks) {
+        long length = 0;
+        int padding = 0;
+        for (String chunk : base64Chunks) {
+            for (int i = 0; chunk != null && i < chunk.length(); i++) {
+                char c = chunk.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    continue;
+                }
+                boolean isDigit = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                        || c == '+' || c == '/';
+                if (c == '=') {
+                    padding++;
+                } else if (!isDigit || padding > 0) {
+                    throw new IllegalArgumentException("Invalid base64 character at position " + length);
+                }
+                length++;
+            }
+        }
+        if (length % 4 != 0 || padding > 2) {
+            throw new IllegalArgumentException("Invalid base64 length or padding");
+        }
+    }
+
+    /* Copies through the fixed buffer */
+    private static final void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    /* Chunks as one stream without whitespace, so that a chunk may end anywhere within a base64 quantum */
+    private static final InputStream chunks(String[] base64Chunks) {
+        Iterator<String> iterator = Arrays.asList(base64Chunks).iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                String chunk = iterator.next();
+                return new ByteArrayInputStream((chunk == null ? "" : chunk.replaceAll("\\s", ""))
+                        .getBytes(StandardCharsets.US_ASCII));
+            }
+        });
+    }
+}
@@ -0,0 +1,52 @@
+package omni.toolkit;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class OTExecutor {
+    /* Limits */
+    public static final int MAX_THREADS = 16;
+    public static final int MAX_DATA_SOURCE_CONCURRENCY = 4;
+    public static final long PERMIT_TIMEOUT_SECONDS = 30;
+
+    /* Shared pool, daemon threads so that it never blocks a shutdown */
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "omni-toolkit-" + THREAD_COUNT.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /* Connections in use per data source, across all callers */
+    private static final ConcurrentHashMap<String, Semaphore> PERMITS = new ConcurrentHashMap<>();
+
+    /* Submit a task to the shared pool */
+    public static final <T> Future<T> submit(Callable<T> task) {
+        return EXECUTOR.submit(task);
+    }
+
+    /* Run the task holding one of the permits of the data source */
+    public static final <T> T withPermit(String dataSource, Callable<T> task) throws Exception {
+        Semaphore permits = PERMITS.computeIfAbsent(dataSource, k -> new Semaphore(MAX_DATA_SOURCE_CONCURRENCY));
+        if (!permits.tryAcquire(PERMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new TimeoutException("Too many concurrent requests on " + dataSource);
+        }
+        try {
+            return task.call();
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -1,30 +1,31 @@
 package omni.toolkit;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.sql.Connection;
+import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import javax.naming.Context;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 
 import org.apache.log4j.Logger;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 
 import com.appiancorp.suiteapi.applications.Application;
 import com.appiancorp.suiteapi.applications.ApplicationService;
@@ -32,10 +33,7 @@ import com.appiancorp.suiteapi.common.LocalObject;
 import com.appiancorp.suiteapi.common.Name;
 import com.appiancorp.suiteapi.content.Content;
 import com.appiancorp.suiteapi.content.ContentConstants;
-import com.appiancorp.suiteapi.content.ContentFilter;
 import com.appiancorp.suiteapi.content.ContentService;
-import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
-import com.appiancorp.suiteapi.content.exceptions.InvalidTypeMaskException;
 import com.appiancorp.suiteapi.expression.annotations.Parameter;
 import com.appiancorp.suiteapi.knowledge.FolderDataType;
 import com.appiancorp.suiteapi.process.ProcessDetails;
@@ -51,26 +49,12 @@ public class OTHelper {
     /* Logger */
     private static final Logger LOG = Logger.getLogger(OTHelper.class);
 
-    /* Types */
-    public static final ArrayList<String> booleanTypes = new ArrayList<>(Arrays.asList("BIT", "BOOL", "BOOLEAN"));
-    public static final ArrayList<String> dateTypes = new ArrayList<>(Arrays.asList("DATE"));
-    public static final ArrayList<String> timeTypes = new ArrayList<>(Arrays.asList("TIME", "TIMETZ"));
-    public static final ArrayList<String> dateTimeTypes = new ArrayList<>(
-            Arrays.asList("DATETIME", "DATETIME2", "SMALLDATETIME", "TIMESTAMP", "TIMESTAMPTZ"));
-    public static final ArrayList<String> doubleTypes = new ArrayList<>(Arrays.asList("BIGINT", "BIGINT IDENTITY",
-            "DECIMAL", "DECIMAL IDENTITY", "DOUBLE", "DOUBLE PRECISION", "FLOAT", "FLOAT4", "FLOAT8", "MONEY",
-            "NUMERIC", "NUMERIC IDENTITY", "REAL", "SMALLINT UNSIGNED", "SMALLMONEY", "TINYINT", "TINYINT UNSIGNED"));
-    public static final ArrayList<String> intTypes = new ArrayList<>(
-            Arrays.asList("BIGINT UNSIGNED", "INT", "INT IDENTITY", "INT UNSIGNED", "INT2", "INT4", "INT8", "INTEGER",
-                    "INTEGER UNSIGNED", "MEDIUMINT", "MEDIUMINT UNSIGNED", "NUMBER", "SERIAL2", "SERIAL4", "SERIAL8",
-                    "SMALLINT", "SMALLINT IDENTITY", "TINYINT IDENTITY"));
-    // public static final ArrayList<String> stringTypes = new
-    // ArrayList<>(Arrays.asList("BINARY", "BYTEA", "CHAR", "ENUM", "GRAPHIC",
-    // "NCHAR", "NTEXT", "NVARCHAR", "RAW", "SET", "SYSNAME", "TEXT",
-    // "UNIQUEIDENTIFIER", "VARBINARY", "VARCHAR", "VARCHAR2", "VARGRAPHIC",
-    // "XML"));
-    public static final ArrayList<String> sizeTypes = new ArrayList<>(
-            Arrays.asList("CHAR", "VARCHAR", "BINARY", "VARBINARY", "NVARCHAR"));
+    /* Metadata fields returned as integer or boolean */
+    public static final Set<String> integerMetadataFields = new HashSet<>(Arrays.asList("DATA_TYPE", "COLUMN_SIZE",
+            "BUFFER_LENGTH", "DECIMAL_DIGITS", "NUM_PREC_RADIX", "NULLABLE", "SQL_DATA_TYPE", "SQL_DATETIME_SUB",
+            "CHAR_OCTET_LENGTH", "ORDINAL_POSITION", "SOURCE_DATA_TYPE"));
+    public static final Set<String> booleanMetadataFields = new HashSet<>(
+            Arrays.asList("IS_NULLABLE", "IS_AUTOINCREMENT", "IS_GENERATEDCOLUMN"));
 
     /* Returns the proper string */
     public static final String toProperCase(String s) {
@@ -98,7 +82,12 @@ public class OTHelper {
 
     /* Get connection to a db */
     public static final Connection getConnection(Context ctx, String dataSource) throws SQLException, NamingException {
-        return ((DataSource) ctx.lookup(dataSource)).getConnection();
+        return OTDataSourceCache.getConnection(ctx, dataSource);
+    }
+
+    /* Resolve a data source, the handle can be used outside of the calling thread */
+    public static final DataSource getDataSource(Context ctx, String dataSource) throws NamingException {
+        return OTDataSourceCache.getDataSource(ctx, dataSource);
     }
 
     /* Get columns of a table */
@@ -106,11 +95,31 @@ public class OTHelper {
         return conn.getMetaData().getColumns(null, null, tableName, null);
     }
 
+    /* Primary key columns of a table in key order, empty when the table has none */
+    public static final String[] getPrimaryKeyColumns(Connection conn, String tableName) throws SQLException {
+        return OTTableKeys.read(conn, null, tableName, false).getPrimaryKey().toArray(new String[0]);
+    }
+
+    /* Get columns of every table of a data source */
+    public static final ResultSet getColumnsOfDataSource(Connection conn) throws SQLException {
+        return conn.getMetaData().getColumns(null, null, "%", null);
+    }
+
     /* Get tables of a data source */
     public static final ResultSet getTablesOfDataSource(Connection conn) throws SQLException {
         return conn.getMetaData().getTables(null, null, "%", null);
     }
 
+    /* Get tables of a data source, filters are pushed down to the driver */
+    public static final ResultSet getTablesOfDataSource(Connection conn, String catalog, String schemaPattern,
+            String tableNamePattern, String[] tableTypes) throws SQLException {
+        return conn.getMetaData().getTables(
+                catalog == null || catalog.isEmpty() ? null : catalog,
+                schemaPattern == null || schemaPattern.isEmpty() ? null : schemaPattern,
+                tableNamePattern == null || tableNamePattern.isEmpty() ? "%" : tableNamePattern,
+                tableTypes == null || tableTypes.length == 0 ? null : tableTypes);
+    }
+
     /* Typed value string */
     public static final TypedValue stringTypedValue(String value) {
         return new TypedValue((long) AppianType.STRING, value);
@@ -131,38 +140,46 @@ public class OTHelper {
         return new TypedValue((long) AppianType.TIMESTAMP, value);
     }
 
+    /* Typed value date */
+    public static final TypedValue dateTypedValue(Date value) {
+        return new TypedValue((long) AppianType.DATE, value);
+    }
+
+    /* Typed value time */
+    public static final TypedValue timeTypedValue(Time value) {
+        return new TypedValue((long) AppianType.TIME, value);
+    }
+
+    /* Typed value boolean */
+    public static final TypedValue booleanTypedValue(Boolean value) {
+        return new TypedValue((long) AppianType.BOOLEAN, value == null ? null : (value ? 1L : 0L));
+    }
+
     /* Returns the appian data type */
     public static final String getXmlDataType(String dataType) {
-        /* Upper */
-        String dataTypeUpper = dataType.toUpperCase();
-
-        /* Match to Appian */
-        if (booleanTypes.contains(dataTypeUpper))
-            return "boolean";
-        else if (dateTypes.contains(dataTypeUpper))
-            return "date";
-        else if (timeTypes.contains(dataTypeUpper))
-            return "time";
-        else if (dateTimeTypes.contains(dataTypeUpper))
-            return "dateTime";
-        else if (doubleTypes.contains(dataTypeUpper))
-            return "double";
-        else if (intTypes.contains(dataTypeUpper))
-            return "int";
-
-        /* By default return string */
-        return "string";
+        return OTTypeRegistry.getXmlDataType(dataType);
+    }
+
+    /* Returns the appian data type using the dialect and the java.sql.Types code */
+    public static final String getXmlDataType(String dialect, int sqlType, String dataType) {
+        return OTTypeRegistry.getXmlDataType(dialect, sqlType, dataType);
     }
 
     /* Returns the xml element for the given column */
     public static final String generateAppInfoText(String columnName, String dataType, Boolean isId,
             Boolean isAutoGenerated, Boolean isNullable, Integer length) {
+        return generateAppInfoText(columnName, dataType, isId, isId, isAutoGenerated, isNullable, length);
+    }
+
+    /* Returns the xml element for the given column, a column of a composite key is not unique on its own */
+    public static final String generateAppInfoText(String columnName, String dataType, Boolean isId,
+            Boolean isUnique, Boolean isAutoGenerated, Boolean isNullable, Integer length) {
         /* Init */
         String id = isId ? "@Id " : "";
         String generatedValue = isAutoGenerated ? "@GeneratedValue " : "";
         String nullable = isNullable ? "" : "nullable=false, ";
-        String unique = isId ? "unique=true, " : "";
-        String len = sizeTypes.contains(dataType.toUpperCase()) ? "(" + length.toString() + ")" : "";
+        String unique = isUnique ? "unique=true, " : "";
+        String len = OTTypeRegistry.isSizeType(dataType) ? "(" + length.toString() + ")" : "";
 
         /* Column */
         String column = "@Column(name=\"" + columnName + "\", " + nullable + unique + "columnDefinition=\""
@@ -172,142 +189,357 @@ public class OTHelper {
         return id + generatedValue + column;
     }
 
-    /* XSD document to string */
-    public static final String xsdDocToString(Document xsdDoc) {
+    /* Write the xsd of a table, returns false if the table has no columns */
+    private static final boolean writeTableXsd(Context ctx, String dataSource, String tableName,
+            String targetNamespace, String name, String description, boolean includeIndexes, OTXsdWriter xsdWriter) {
+
+        /* Vars */
+        Connection conn = null;
+        ResultSet rsColumns = null;
+        List<OTColumn> columns = new ArrayList<>();
+        OTTableKeys keys = null;
+        String dialect = null;
+
+        /* Connection to db */
         try {
-            StringWriter sw = new StringWriter();
-            TransformerFactory tf = TransformerFactory.newInstance();
-            Transformer transformer = tf.newTransformer();
-            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-            transformer.transform(new DOMSource(xsdDoc), new StreamResult(sw));
-            return sw.toString();
+            conn = getConnection(ctx, dataSource);
+            dialect = OTTypeRegistry.getDialect(conn);
+
+            /* Get columns of the table */
+            rsColumns = getColumnsOfTable(conn, tableName);
+            while (rsColumns.next()) {
+                columns.add(OTColumn.fromResultSet(rsColumns));
+            }
+            rsColumns.close();
+            rsColumns = null;
+
+            /* Keys on the same connection */
+            if (!columns.isEmpty()) {
+                keys = readTableKeys(conn, columns.get(0).getTableSchema(), tableName, includeIndexes);
+            }
         } catch (Exception e) {
-            throw new RuntimeException("Error converting to String", e);
+            logError(e.getMessage());
+            return false;
+        } finally {
+            if (rsColumns != null) {
+                try {
+                    rsColumns.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
         }
-    }
 
-    /* Walk subfolder until found */
-    public static final Long[] walkSubfoldersToFindContent(ContentService cs, ContentFilter contentFilter,
-            Long folderId) throws InvalidContentException, InvalidTypeMaskException {
-        /* Find content inside current folder of iteration */
-        Long[] ids = cs.getChildrenIds(folderId, contentFilter, ContentConstants.GC_MOD_NORMAL);
+        /* Return early if empty */
+        if (columns.isEmpty()) {
+            return false;
+        }
 
-        /* If found return */
-        if (ids.length != 0) {
-            return ids;
+        /* Stream the schema */
+        try {
+            xsdWriter.startSchema(targetNamespace);
+            xsdWriter.writeComplexType(dialect, tableName, name, description, columns, keys);
+            xsdWriter.endSchema();
+            return true;
+        } catch (IOException e) {
+            logError(e.getMessage());
+            return false;
         }
+    }
+
+    /* Keys of a table, null when the driver cannot tell so that the "id" naming convention applies. Indexes cost
+     * one more round trip per table and are only read when asked for */
+    private static final OTTableKeys readTableKeys(Connection conn, String schema, String tableName,
+            boolean includeIndexes) {
+        try {
+            return OTTableKeys.read(conn, schema, tableName, includeIndexes);
+        } catch (SQLException e) {
+            logError(e.getMessage());
+            return null;
+        }
+    }
 
-        /* Find all subfolders */
-        Long[] recIds = cs.getChildrenIds(folderId, new ContentFilter(ContentConstants.TYPE_FOLDER),
-                ContentConstants.GC_MOD_NORMAL);
+    /* Convert table info to xsd, unique indexes mark unique columns when includeIndexes */
+    public static final String getTableXsd(Context ctx, String dataSource, String tableName, String targetNamespace,
+            String name, String description, boolean includeIndexes) {
+        StringWriter sw = new StringWriter();
+        return writeTableXsd(ctx, dataSource, tableName, targetNamespace, name, description, includeIndexes,
+                new OTXsdWriter(sw))
+                ? sw.toString()
+                : null;
+    }
+
+    /* Convert table info to xsd as utf-8 bytes, ready for XsdTypeImporter */
+    public static final byte[] getTableXsdBytes(Context ctx, String dataSource, String tableName,
+            String targetNamespace, String name, String description) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        return writeTableXsd(ctx, dataSource, tableName, targetNamespace, name, description, false,
+                OTXsdWriter.forStream(bos))
+                        ? bos.toByteArray()
+                        : null;
+    }
+
+    /* Convert the info of several tables to a single xsd as utf-8 bytes, all read over one connection. Returns
+     * null if any table has no columns */
+    public static final byte[] getTablesXsdBytes(Context ctx, String dataSource, String[] tableNames,
+            String targetNamespace, String[] names, String[] descriptions) {
 
-        /* Search inside all subfolders */
-        for (int i = 0; i < recIds.length; i++) {
-            Long[] res = walkSubfoldersToFindContent(cs, contentFilter, recIds[i]);
+        /* Vars */
+        Connection conn = null;
+        ResultSet rsColumns = null;
+        List<List<OTColumn>> tables = new ArrayList<>();
+        List<OTTableKeys> keys = new ArrayList<>();
+        String dialect = null;
 
-            /* If found return */
-            if (res != null) {
-                return res;
+        /* Connection to db */
+        try {
+            conn = getConnection(ctx, dataSource);
+            dialect = OTTypeRegistry.getDialect(conn);
+
+            /* Get columns of every table */
+            for (String tableName : tableNames) {
+                List<OTColumn> columns = new ArrayList<>();
+                rsColumns = getColumnsOfTable(conn, tableName);
+                while (rsColumns.next()) {
+                    columns.add(OTColumn.fromResultSet(rsColumns));
+                }
+                rsColumns.close();
+                rsColumns = null;
+                if (columns.isEmpty()) {
+                    logError("Table " + tableName + " not found in " + dataSource);
+                    return null;
+                }
+                tables.add(columns);
+                keys.add(readTableKeys(conn, columns.get(0).getTableSchema(), tableName, false));
+            }
+        } catch (Exception e) {
+            logError(e.getMessage());
+            return null;
+        } finally {
+            if (rsColumns != null) {
+                try {
+                    rsColumns.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
             }
         }
 
-        /* Not found */
-        return null;
+        /* Stream the schema, one complex type per table */
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        OTXsdWriter xsdWriter = OTXsdWriter.forStream(bos);
+        try {
+            xsdWriter.startSchema(targetNamespace);
+            for (int i = 0; i < tableNames.length; i++) {
+                xsdWriter.writeComplexType(dialect, tableNames[i], names[i],
+                        descriptions == null ? null : descriptions[i], tables.get(i), keys.get(i));
+            }
+            xsdWriter.endSchema();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            logError(e.getMessage());
+            return null;
+        }
     }
 
-    /* Convert table info to xsd */
-    public static final String getTableXsd(Context ctx, String dataSource, String tableName, String targetNamespace,
-            String name, String description) {
+    /* Write the xsd of all tables of a data source, returns false if no table matched */
+    private static final boolean writeDataSourceXsd(Context ctx, String dataSource, String targetNamespace,
+            String namePrefix, String includePattern, String excludePattern, OTXsdWriter xsdWriter) {
 
         /* Vars */
         Connection conn = null;
         ResultSet rsColumns = null;
-        Document xsdDoc = null;
+        Pattern include = includePattern == null || includePattern.isEmpty() ? null : Pattern.compile(includePattern);
+        Pattern exclude = excludePattern == null || excludePattern.isEmpty() ? null : Pattern.compile(excludePattern);
+        String prefix = namePrefix == null ? "" : namePrefix;
 
         /* Connection to db */
         try {
             conn = getConnection(ctx, dataSource);
+            String dialect = OTTypeRegistry.getDialect(conn);
+
+            /* Single scan of the columns of every table, rows come ordered by table. Tables are kept until the
+             * scan is closed since not every driver allows a second open result set for the keys */
+            rsColumns = getColumnsOfDataSource(conn);
+            Set<String> emitted = new HashSet<>();
+            List<List<OTColumn>> tables = new ArrayList<>();
+            String currentSchema = null;
+            String currentTable = null;
+            List<OTColumn> columns = new ArrayList<>();
+            while (rsColumns.next()) {
+                String schemaName = rsColumns.getString("TABLE_SCHEM");
+                String tableName = rsColumns.getString("TABLE_NAME");
+
+                /* Table changed, keep the previous one */
+                if (!tableName.equals(currentTable) || !Objects.equals(schemaName, currentSchema)) {
+                    if (!columns.isEmpty() && emitted.add(currentTable)) {
+                        tables.add(columns);
+                    }
+                    currentSchema = schemaName;
+                    currentTable = tableName;
+                    columns = new ArrayList<>();
+                }
+
+                /* Skip filtered tables and tables already emitted from another schema */
+                if ((include != null && !include.matcher(tableName).matches())
+                        || (exclude != null && exclude.matcher(tableName).matches())
+                        || emitted.contains(tableName)) {
+                    continue;
+                }
+                columns.add(OTColumn.fromResultSet(rsColumns));
+            }
+            if (!columns.isEmpty() && emitted.add(currentTable)) {
+                tables.add(columns);
+            }
+            rsColumns.close();
+            rsColumns = null;
+
+            /* Stream the schema, keys read table by table on the same connection */
+            xsdWriter.startSchema(targetNamespace);
+            for (List<OTColumn> table : tables) {
+                OTColumn first = table.get(0);
+                xsdWriter.writeComplexType(dialect, first.getTableName(), prefix + first.getTableName(),
+                        first.getTableName(), table,
+                        readTableKeys(conn, first.getTableSchema(), first.getTableName(), false));
+            }
+            xsdWriter.endSchema();
 
-            /* Get columns of the table */
-            rsColumns = getColumnsOfTable(conn, tableName);
+            /* Nothing matched */
+            return !emitted.isEmpty();
+        } catch (Exception e) {
+            logError(e.getMessage());
+            return false;
+        } finally {
+            if (rsColumns != null) {
+                try {
+                    rsColumns.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
+        }
+    }
+
+    /* Convert all tables of a data source to a single xsd, include and exclude are optional regexes */
+    public static final String getDataSourceXsd(Context ctx, String dataSource, String targetNamespace,
+            String namePrefix, String includePattern, String excludePattern) {
+        StringWriter sw = new StringWriter();
+        return writeDataSourceXsd(ctx, dataSource, targetNamespace, namePrefix, includePattern, excludePattern,
+                new OTXsdWriter(sw))
+                        ? sw.toString()
+                        : null;
+    }
 
-            /* Return early if empty */
-            if (rsColumns.next() == false) {
-                return null;
+    /* Xsd of a table and of the tables related to it up to depth foreign keys away. Every table is reached once,
+     * through the first relation found breadth first, so the nested types never form a cycle. Relations cascade
+     * nothing, a write never reaches a shared parent or the children of a row */
+    public static final String getRelationalXsd(Context ctx, String dataSource, String tableName,
+            String targetNamespace, String namePrefix, int depth, String schema, Long cacheTtl) {
+
+        /* Vars */
+        Connection conn = null;
+        ResultSet rsColumns = null;
+        String prefix = namePrefix == null ? "" : namePrefix;
+        Map<String, List<OTRelationGraph.Relation>> reached = new LinkedHashMap<>();
+        Map<String, List<OTColumn>> columnsOf = new HashMap<>();
+        Map<String, OTTableKeys> keysOf = new HashMap<>();
+        Map<String, List<OTXsdWriter.Nested>> nested = new HashMap<>();
+        Map<String, Set<String>> skipColumns = new HashMap<>();
+        StringWriter sw = new StringWriter();
+
+        try {
+            /* Walk the relation graph, relations of a table are many to one when it holds the foreign key */
+            OTRelationGraph graph = OTRelationGraph.get(ctx, dataSource, schema, cacheTtl);
+            reached.put(tableName, new ArrayList<>());
+            List<String> level = Arrays.asList(tableName);
+            for (int d = 0; d < depth && !level.isEmpty(); d++) {
+                List<String> next = new ArrayList<>();
+                for (String current : level) {
+                    for (OTRelationGraph.Relation relation : graph.getImported(current)) {
+                        if (!reached.containsKey(relation.getPkTable())) {
+                            reached.put(relation.getPkTable(), new ArrayList<>());
+                            next.add(relation.getPkTable());
+                            reached.get(current).add(relation);
+                        }
+                    }
+                    for (OTRelationGraph.Relation relation : graph.getExported(current)) {
+                        if (!reached.containsKey(relation.getFkTable())) {
+                            reached.put(relation.getFkTable(), new ArrayList<>());
+                            next.add(relation.getFkTable());
+                            reached.get(current).add(relation);
+                        }
+                    }
+                }
+                level = next;
             }
 
-            /* Create xsd document */
-            xsdDoc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-
-            /* Schema */
-            Element rootElement = xsdDoc.createElement("xsd:schema");
-            rootElement.setAttribute("xmlns:xsd", "http://www.w3.org/2001/XMLSchema");
-            rootElement.setAttribute("xmlns:tns", targetNamespace);
-            rootElement.setAttribute("targetNamespace", targetNamespace);
-            xsdDoc.appendChild(rootElement);
-
-            /* Name */
-            Element complexTypeElement = xsdDoc.createElement("xsd:complexType");
-            complexTypeElement.setAttribute("name", name);
-            rootElement.appendChild(complexTypeElement);
-
-            /* Annotation */
-            Element annotationElement = xsdDoc.createElement("xsd:annotation");
-            complexTypeElement.appendChild(annotationElement);
-
-            /* AppInfo */
-            Element appInfoElement = xsdDoc.createElement("xsd:appinfo");
-            appInfoElement.setAttribute("source", "appian.jpa");
-            appInfoElement.setTextContent("@Table(name=\"" + tableName + "\")");
-            annotationElement.appendChild(appInfoElement);
-
-            /* Description */
-            Element documentationElement = xsdDoc.createElement("xsd:documentation");
-            Node cdata = xsdDoc.createCDATASection(description);
-            documentationElement.appendChild(cdata);
-            annotationElement.appendChild(documentationElement);
-
-            /* Sequence to hold fields */
-            Element sequenceElement = xsdDoc.createElement("xsd:sequence");
-            complexTypeElement.appendChild(sequenceElement);
-
-            /* Iterate over columns */
-            do {
-                String columnName = rsColumns.getString("COLUMN_NAME");
-                String isNullable = rsColumns.getString("IS_NULLABLE");
-                String dataType = rsColumns.getString("TYPE_NAME");
-                String isAutoIncrement = rsColumns.getString("IS_AUTOINCREMENT");
-                String isGeneratedColumn = rsColumns.getString("IS_GENERATEDCOLUMN");
-                String columnSize = rsColumns.getString("COLUMN_SIZE");
-
-                /* Column element */
-                Element element = xsdDoc.createElement("xsd:element");
-                element.setAttribute("name", toCamelCase(columnName));
-                element.setAttribute("type", "xsd:" + getXmlDataType(dataType));
-                element.setAttribute("nillable", "true");
-
-                /* Column annotation */
-                Element annotation = xsdDoc.createElement("xsd:annotation");
-                element.appendChild(annotation);
-
-                /* Column appInfo */
-                Element app = xsdDoc.createElement("xsd:appinfo");
-                app.setAttribute("source", "appian.jpa");
-                String s = generateAppInfoText(
-                        columnName,
-                        dataType,
-                        columnName.toLowerCase().equals("id"),
-                        isGeneratedColumn.equalsIgnoreCase("yes") || isAutoIncrement.equalsIgnoreCase("yes"),
-                        isNullable.equalsIgnoreCase("yes"),
-                        columnSize == null ? 0 : Integer.parseInt(columnSize));
-                app.setTextContent(s);
-                annotation.appendChild(app);
-                sequenceElement.appendChild(element);
-            } while (rsColumns.next());
+            /* Columns and keys of every reached table */
+            conn = getConnection(ctx, dataSource);
+            String dialect = OTTypeRegistry.getDialect(conn);
+            for (String table : reached.keySet()) {
+                List<OTColumn> columns = new ArrayList<>();
+                rsColumns = conn.getMetaData().getColumns(null, schema == null || schema.isEmpty() ? null : schema,
+                        table, null);
+                while (rsColumns.next()) {
+                    columns.add(OTColumn.fromResultSet(rsColumns));
+                }
+                rsColumns.close();
+                rsColumns = null;
+                if (columns.isEmpty()) {
+                    logError("Table " + table + " not found in " + dataSource);
+                    return null;
+                }
+                columnsOf.put(table, columns);
+                keysOf.put(table, readTableKeys(conn, columns.get(0).getTableSchema(), table, false));
+            }
+
+            /* Join columns are mapped by the relation, unless they are part of the key of the child, which then
+             * keeps them and the relation only reads them */
+            for (Map.Entry<String, List<OTRelationGraph.Relation>> entry : reached.entrySet()) {
+                List<OTXsdWriter.Nested> relations = new ArrayList<>();
+                for (OTRelationGraph.Relation relation : entry.getValue()) {
+                    boolean many = !relation.getFkTable().equals(entry.getKey());
+                    OTTableKeys childKeys = keysOf.get(relation.getFkTable());
+                    boolean readOnly = false;
+                    for (String column : relation.getFkColumns()) {
+                        readOnly |= childKeys == null ? column.equalsIgnoreCase("id") : childKeys.isId(column);
+                    }
+                    if (!readOnly) {
+                        skipColumns.computeIfAbsent(relation.getFkTable(), k -> new HashSet<>())
+                                .addAll(relation.getFkColumns());
+                    }
+                    relations.add(new OTXsdWriter.Nested(nestedName(relation, many),
+                            prefix + (many ? relation.getFkTable() : relation.getPkTable()),
+                            (many ? "@OneToMany " : "@ManyToOne ") + joinColumns(relation, readOnly), many));
+                }
+                nested.put(entry.getKey(), relations);
+            }
+
+            /* Stream the schema */
+            OTXsdWriter xsdWriter = new OTXsdWriter(sw);
+            xsdWriter.startSchema(targetNamespace);
+            for (String table : reached.keySet()) {
+                List<OTColumn> columns = columnsOf.get(table);
+                xsdWriter.writeComplexType(dialect, table, prefix + table, table, columns, keysOf.get(table),
+                        skipColumns.getOrDefault(table, Collections.emptySet()),
+                        uniqueNames(columns, nested.get(table)));
+            }
+            xsdWriter.endSchema();
         } catch (Exception e) {
             logError(e.getMessage());
             return null;
@@ -325,30 +557,158 @@ public class OTHelper {
                     /* Ignored */}
             }
         }
+        return sw.toString();
+    }
 
-        /* Return as string */
-        return xsdDocToString(xsdDoc);
+    /* Element name of a relation: the foreign key without its id suffix, the related table otherwise */
+    private static final String nestedName(OTRelationGraph.Relation relation, boolean many) {
+        if (!many && relation.getFkColumns().size() == 1) {
+            String column = relation.getFkColumns().get(0).replaceAll("(?i)_?id$", "");
+            if (!column.isEmpty()) {
+                return toCamelCase(column);
+            }
+        }
+        return toCamelCase(many ? relation.getFkTable() : relation.getPkTable());
     }
 
+    /* Join column annotations of a relation, read only when the columns are also mapped as fields */
+    private static final String joinColumns(OTRelationGraph.Relation relation, boolean readOnly) {
+        List<String> joins = new ArrayList<>();
+        for (int i = 0; i < relation.getFkColumns().size(); i++) {
+            joins.add("@JoinColumn(name=\"" + relation.getFkColumns().get(i) + "\", referencedColumnName=\""
+                    + relation.getPkColumns().get(i) + "\"" + (readOnly ? ", insertable=false, updatable=false" : "")
+                    + ")");
+        }
+        return joins.size() == 1 ? joins.get(0) : "@JoinColumns({" + String.join(", ", joins) + "})";
+    }
+
+    /* Nested elements renamed where they clash with a column or with each other */
+    private static final List<OTXsdWriter.Nested> uniqueNames(List<OTColumn> columns,
+            List<OTXsdWriter.Nested> nested) {
+        Set<String> used = new HashSet<>();
+        for (OTColumn column : columns) {
+            used.add(toCamelCase(column.getName()));
+        }
+        List<OTXsdWriter.Nested> result = new ArrayList<>();
+        for (OTXsdWriter.Nested element : nested) {
+            String name = element.getName();
+            for (int i = 2; !used.add(name); i++) {
+                name = element.getName() + i;
+            }
+            result.add(name.equals(element.getName()) ? element : element.withName(name));
+        }
+        return result;
+    }
+
+    /* Table metadata rows, numeric and YES/NO fields are converted when typed */
+    public static final Map<Object, Object>[] createTableMetadataMaps(OTTableMetadata metadata, boolean typed) {
+        /* Kind of each field: 0 string, 1 integer, 2 boolean */
+        String[] labels = metadata.getLabels();
+        int[] kinds = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            String label = labels[i].toUpperCase();
+            if (typed && integerMetadataFields.contains(label)) {
+                kinds[i] = 1;
+            } else if (typed && booleanMetadataFields.contains(label)) {
+                kinds[i] = 2;
+            }
+        }
+
+        /* Rows */
+        @SuppressWarnings("unchecked")
+        Map<Object, Object>[] result = new Map[metadata.getRows().size()];
+        int r = 0;
+        for (String[] values : metadata.getRows()) {
+            Map<Object, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < labels.length; i++) {
+                String value = values[i];
+                TypedValue tv;
+                if (kinds[i] == 1) {
+                    Long number = null;
+                    try {
+                        number = value == null ? null : Long.parseLong(value.trim());
+                    } catch (NumberFormatException e) {
+                        /* Left null */}
+                    tv = intTypedValue(number);
+                } else if (kinds[i] == 2) {
+                    tv = booleanTypedValue(
+                            value == null || value.isEmpty() ? null : value.equalsIgnoreCase("yes"));
+                } else {
+                    tv = stringTypedValue(value);
+                }
+                row.put(stringTypedValue(labels[i]), tv);
+            }
+            result[r++] = row;
+        }
+        return result;
+    }
+
+    /* Content attributes, the last three cost one service call each */
+    public static final String[] CONTENT_FIELDS = { "name", "description", "type", "nVersions", "parentId",
+            "parentName", "parentType", "lockedAt", "lockedBy", "id", "uuid", "url", "opaqueUri",
+            "externalFilename" };
+
     /* Content Attributes */
     public static final Map<Object, Object> createContentAttributesMap(ContentService cs, Content content)
             throws Exception {
-        Map<Object, Object> map = new HashMap<>();
+        return createContentAttributesMap(cs, content, CONTENT_FIELDS);
+    }
+
+    /* Content attributes restricted to the given fields, in their order, unknown fields are skipped */
+    public static final Map<Object, Object> createContentAttributesMap(ContentService cs, Content content,
+            String[] fields) throws Exception {
+        Map<Object, Object> map = new LinkedHashMap<>();
         Long contentId = content.getId();
-        map.put(stringTypedValue("name"), stringTypedValue(content.getDisplayName()));
-        map.put(stringTypedValue("description"), stringTypedValue(content.getDescription()));
-        map.put(stringTypedValue("type"), intTypedValue(content.getType().longValue()));
-        map.put(stringTypedValue("nVersions"), intTypedValue(content.getNumberOfVersions()));
-        map.put(stringTypedValue("parentId"), intTypedValue(content.getParent()));
-        map.put(stringTypedValue("parentName"), stringTypedValue(content.getParentName()));
-        map.put(stringTypedValue("parentType"), intTypedValue(content.getParentType().longValue()));
-        map.put(stringTypedValue("lockedAt"), timestampTypedValue(content.getLockedAt()));
-        map.put(stringTypedValue("lockedBy"), stringTypedValue(content.getLockedByUsername()));
-        map.put(stringTypedValue("id"), intTypedValue(contentId));
-        map.put(stringTypedValue("uuid"), stringTypedValue(content.getUuid()));
-        map.put(stringTypedValue("url"), stringTypedValue(cs.getContentUrl(contentId)));
-        map.put(stringTypedValue("opaqueUri"), stringTypedValue(cs.getOpaqueContentUri(contentId)));
-        map.put(stringTypedValue("externalFilename"), stringTypedValue(cs.getExternalFilename(contentId)));
+        for (String field : fields) {
+            TypedValue value;
+            switch (field) {
+            case "name":
+                value = stringTypedValue(content.getDisplayName());
+                break;
+            case "description":
+                value = stringTypedValue(content.getDescription());
+                break;
+            case "type":
+                value = intTypedValue(content.getType().longValue());
+                break;
+            case "nVersions":
+                value = intTypedValue(content.getNumberOfVersions());
+                break;
+            case "parentId":
+                value = intTypedValue(content.getParent());
+                break;
+            case "parentName":
+                value = stringTypedValue(content.getParentName());
+                break;
+            case "parentType":
+                value = intTypedValue(content.getParentType().longValue());
+                break;
+            case "lockedAt":
+                value = timestampTypedValue(content.getLockedAt());
+                break;
+            case "lockedBy":
+                value = stringTypedValue(content.getLockedByUsername());
+                break;
+            case "id":
+                value = intTypedValue(contentId);
+                break;
+            case "uuid":
+                value = stringTypedValue(content.getUuid());
+                break;
+            case "url":
+                value = stringTypedValue(cs.getContentUrl(contentId));
+                break;
+            case "opaqueUri":
+                value = stringTypedValue(cs.getOpaqueContentUri(contentId));
+                break;
+            case "externalFilename":
+                value = stringTypedValue(cs.getExternalFilename(contentId));
+                break;
+            default:
+                continue;
+            }
+            map.put(stringTypedValue(field), value);
+        }
         return map;
     }
 
@@ -445,10 +805,9 @@ public class OTHelper {
             Long contentId,
             Long application) {
         try {
-            /* Add Content to Application */
-            final String contentUuid = cs.getVersion(contentId, ContentConstants.VERSION_CURRENT)
-                    .getUuid();
+            /* Add Content to Application, the uuid usually comes from the cache filled on create */
             if (application != null) {
+                final String contentUuid = OTContentUuids.getUuid(cs, contentId);
                 final Application appInstance = as.getApplication(application);
                 appInstance.addObjectsByType(AppianTypeLong.CONTENT_ITEM, new String[] { contentUuid });
                 as.save(appInstance);
@@ -0,0 +1,271 @@
+package omni.toolkit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Keyset paging: rows after the last key of the previous page, ordered by the key columns. The predicate is the
+ * expanded form (k1 > ?) OR (k1 = ? AND k2 > ?) ... since row value comparisons are not supported everywhere.
+ * Key columns must be unique and not null. Cursors are opaque url-safe tokens holding the table, the key columns
+ * and the typed key values of the last row.
+ */
+public class OTKeyset {
+    /* Cursor format version */
+    private static final int VERSION = 1;
+
+    /* Value tags */
+    private static final byte NULL = 'N';
+    private static final byte LONG = 'L';
+    private static final byte DECIMAL = 'X';
+    private static final byte DOUBLE = 'D';
+    private static final byte BOOLEAN = 'B';
+    private static final byte TIMESTAMP = 'T';
+    private static final byte DATE = 'd';
+    private static final byte TIME = 't';
+    private static final byte BYTES = 'Y';
+    private static final byte STRING = 'S';
+    private static final byte UUID_TAG = 'U';
+
+    /* Quoted identifier, embedded quotes are doubled */
+    public static final String quote(String quoteString, String identifier) {
+        if (quoteString == null || quoteString.trim().isEmpty()) {
+            return identifier;
+        }
+        return quoteString + identifier.replace(quoteString, quoteString + quoteString) + quoteString;
+    }
+
+    /* Select statement of a page, key values of the cursor are bound in the order of the predicate */
+    public static final String buildQuery(String dialect, String quoteString, String tableName, List<String> columns,
+            String[] keyColumns, boolean hasCursor, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (OTTypeRegistry.SQLSERVER.equals(dialect)) {
+            sql.append("TOP ").append(limit).append(' ');
+        }
+
+        /* Columns */
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(quote(quoteString, columns.get(i)));
+        }
+        sql.append(" FROM ").append(quote(quoteString, tableName));
+
+        /* Rows after the cursor */
+        if (hasCursor) {
+            sql.append(" WHERE ");
+            for (int i = 0; i < keyColumns.length; i++) {
+                sql.append(i == 0 ? "(" : " OR (");
+                for (int j = 0; j < i; j++) {
+                    sql.append(quote(quoteString, keyColumns[j])).append(" = ? AND ");
+                }
+                sql.append(quote(quoteString, keyColumns[i])).append(" > ?)");
+            }
+        }
+
+        /* Order */
+        sql.append(" ORDER BY ");
+        for (int i = 0; i < keyColumns.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(quote(quoteString, keyColumns[i]));
+        }
+
+        /* Limit, other dialects rely on setMaxRows */
+        if (OTTypeRegistry.POSTGRESQL.equals(dialect) || OTTypeRegistry.MYSQL.equals(dialect)
+                || OTTypeRegistry.MARIADB.equals(dialect)) {
+            sql.append(" LIMIT ").append(limit);
+        } else if (OTTypeRegistry.ORACLE.equals(dialect) || OTTypeRegistry.DB2.equals(dialect)) {
+            sql.append(" FETCH FIRST ").append(limit).append(" ROWS ONLY");
+        }
+        return sql.toString();
+    }
+
+    /* Parameters of the predicate for the given key values */
+    public static final Object[] predicateParams(Object[] key) {
+        Object[] params = new Object[key.length * (key.length + 1) / 2];
+        int p = 0;
+        for (int i = 0; i < key.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                params[p++] = key[j];
+            }
+        }
+        return params;
+    }
+
+    /* Opaque token of the last key */
+    public static final String encodeCursor(String tableName, String[] keyColumns, Object[] key) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeByte(VERSION);
+        out.writeUTF(tableName);
+        out.writeShort(keyColumns.length);
+        for (int i = 0; i < keyColumns.length; i++) {
+            out.writeUTF(keyColumns[i]);
+            writeValue(out, key[i]);
+        }
+        out.flush();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bos.toByteArray());
+    }
+
+    /* Key values of a token, which must have been issued for the same table and key columns */
+    public static final Object[] decodeCursor(String cursor, String tableName, String[] keyColumns) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)));
+            if (in.readByte() != VERSION || !in.readUTF().equals(tableName) || in.readShort() != keyColumns.length) {
+                throw new IllegalArgumentException("Cursor does not match the table");
+            }
+            Object[] key = new Object[keyColumns.length];
+            for (int i = 0; i < keyColumns.length; i++) {
+                if (!in.readUTF().equals(keyColumns[i])) {
+                    throw new IllegalArgumentException("Cursor does not match the key columns");
+                }
+                key[i] = readValue(in);
+                if (key[i] == null) {
+                    throw new IllegalArgumentException("Cursor holds a null key");
+                }
+            }
+            return key;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + e.getMessage(), e);
+        }
+    }
+
+    /* Key value of a column with the getter of its sql type, so that it binds back as the same type. Types that
+     * would only come back as text are rejected rather than compared as strings */
+    public static final Object readKey(ResultSet rs, int column, int sqlType, String typeName) throws SQLException {
+        Object value;
+        switch (sqlType) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+            value = rs.getLong(column);
+            break;
+        case Types.NUMERIC:
+        case Types.DECIMAL:
+            return rs.getBigDecimal(column);
+        case Types.REAL:
+        case Types.FLOAT:
+        case Types.DOUBLE:
+            value = rs.getDouble(column);
+            break;
+        case Types.BIT:
+        case Types.BOOLEAN:
+            value = rs.getBoolean(column);
+            break;
+        case Types.DATE:
+            return rs.getDate(column);
+        case Types.TIME:
+            return rs.getTime(column);
+        case Types.TIMESTAMP:
+        case Types.TIMESTAMP_WITH_TIMEZONE:
+            return rs.getTimestamp(column);
+        case Types.CHAR:
+        case Types.VARCHAR:
+        case Types.NCHAR:
+        case Types.NVARCHAR:
+            return rs.getString(column);
+        case Types.BINARY:
+        case Types.VARBINARY:
+            return rs.getBytes(column);
+        default:
+            if ("uuid".equalsIgnoreCase(typeName)) {
+                String uuid = rs.getString(column);
+                return uuid == null ? null : UUID.fromString(uuid);
+            }
+            throw new IllegalArgumentException("Key column type " + typeName + " is not supported for paging");
+        }
+        return rs.wasNull() ? null : value;
+    }
+
+    private static final void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            out.writeByte(LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            out.writeByte(DECIMAL);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof Time) {
+            out.writeByte(TIME);
+            out.writeLong(((Time) value).getTime());
+        } else if (value instanceof UUID) {
+            out.writeByte(UUID_TAG);
+            out.writeUTF(value.toString());
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            out.writeInt(((byte[]) value).length);
+            out.write((byte[]) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else {
+            throw new IOException("Key value of type " + value.getClass().getName() + " cannot be kept in a cursor");
+        }
+    }
+
+    private static final Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+        case NULL:
+            return null;
+        case LONG:
+            return in.readLong();
+        case DECIMAL:
+            return new BigDecimal(in.readUTF());
+        case DOUBLE:
+            return in.readDouble();
+        case BOOLEAN:
+            return in.readBoolean();
+        case TIMESTAMP: {
+            Timestamp ts = new Timestamp(in.readLong());
+            ts.setNanos(in.readInt());
+            return ts;
+        }
+        case DATE:
+            return new Date(in.readLong());
+        case TIME:
+            return new Time(in.readLong());
+        case BYTES: {
+            int length = in.readInt();
+            if (length < 0 || length > in.available()) {
+                throw new IOException("Truncated cursor");
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return bytes;
+        }
+        case UUID_TAG:
+            return UUID.fromString(in.readUTF());
+        case STRING:
+            return in.readUTF();
+        default:
+            throw new IOException("Unknown value tag " + tag);
+        }
+    }
+}
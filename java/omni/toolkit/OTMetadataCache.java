@@ -0,0 +1,222 @@
+package omni.toolkit;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+public class OTMetadataCache {
+    /* Defaults */
+    public static final long DEFAULT_TTL_SECONDS = 300;
+    public static final int MAX_ENTRIES = 1000;
+
+    /* Cache of table metadata keyed by data source and table name */
+    private static final OTTtlCache<OTTableMetadata> CACHE = new OTTtlCache<>(MAX_ENTRIES);
+
+    /* Entries restored from the snapshot file, served once while a fresh copy is read in the background */
+    private static final Map<String, OTTableMetadata> STALE = new ConcurrentHashMap<>();
+    private static final long STALE_TTL_MILLIS = 60000;
+    private static final AtomicLong STALE_HITS = new AtomicLong();
+
+    /* Separator that cannot appear in a jndi name */
+    private static final String SEPARATOR = "\u0000";
+
+    private static final String key(String dataSource, String tableName) {
+        return dataSource + SEPARATOR + tableName;
+    }
+
+    /* Returns the metadata of the table, from cache when possible. A ttl of 0 bypasses the cache */
+    public static final OTTableMetadata getTableMetadata(Context ctx, String dataSource, String tableName,
+            Long ttlSeconds) throws SQLException, NamingException {
+        return getTableMetadata(ctx, dataSource, tableName, ttlSeconds, null);
+    }
+
+    /* Returns the metadata of the table restricted to fields. Cached entries always hold every field, so only
+     * uncached reads skip the other columns of the result set */
+    public static final OTTableMetadata getTableMetadata(Context ctx, String dataSource, String tableName,
+            Long ttlSeconds, String[] fields) throws SQLException, NamingException {
+        OTTableMetadata cached = getCached(dataSource, tableName, ttlSeconds, fields);
+        if (cached != null) {
+            return cached;
+        }
+        DataSource handle = OTHelper.getDataSource(ctx, dataSource);
+        OTTableMetadata stale = getStale(handle, dataSource, tableName, ttlSeconds, fields);
+        if (stale != null) {
+            return stale;
+        }
+        return load(handle, dataSource, tableName, ttlSeconds, fields);
+    }
+
+    /* Same as above with a data source already resolved, for worker threads */
+    public static final OTTableMetadata getTableMetadata(DataSource handle, String dataSource, String tableName,
+            Long ttlSeconds, String[] fields) throws SQLException {
+        OTTableMetadata cached = getCached(dataSource, tableName, ttlSeconds, fields);
+        if (cached != null) {
+            return cached;
+        }
+        OTTableMetadata stale = getStale(handle, dataSource, tableName, ttlSeconds, fields);
+        if (stale != null) {
+            return stale;
+        }
+        return load(handle, dataSource, tableName, ttlSeconds, fields);
+    }
+
+    private static final OTTableMetadata getCached(String dataSource, String tableName, Long ttlSeconds,
+            String[] fields) {
+        long ttl = ttlSeconds == null ? DEFAULT_TTL_SECONDS : ttlSeconds;
+        if (ttl <= 0) {
+            return null;
+        }
+        OTSnapshotStore.load();
+        OTTableMetadata cached = CACHE.get(key(dataSource, tableName));
+        return cached == null ? null : cached.project(fields);
+    }
+
+    /* Snapshot entry, cached for a short while and revalidated in the background */
+    private static final OTTableMetadata getStale(DataSource handle, String dataSource, String tableName,
+            Long ttlSeconds, String[] fields) {
+        long ttl = ttlSeconds == null ? DEFAULT_TTL_SECONDS : ttlSeconds;
+        OTTableMetadata stale = ttl > 0 ? STALE.remove(key(dataSource, tableName)) : null;
+        if (stale == null) {
+            return null;
+        }
+        CACHE.put(key(dataSource, tableName), stale, Math.min(STALE_TTL_MILLIS, ttl * 1000));
+        OTExecutor.submit(() -> OTExecutor.withPermit(dataSource,
+                () -> load(handle, dataSource, tableName, ttlSeconds, null)));
+        STALE_HITS.incrementAndGet();
+        return stale.project(fields);
+    }
+
+    private static final OTTableMetadata load(DataSource handle, String dataSource, String tableName,
+            Long ttlSeconds, String[] fields) throws SQLException {
+        long ttl = ttlSeconds == null ? DEFAULT_TTL_SECONDS : ttlSeconds;
+
+        /* Read from db */
+        OTTableMetadata metadata;
+        Connection conn = null;
+        try {
+            conn = OTDataSourceCache.getConnection(handle, dataSource);
+            metadata = readTableMetadata(conn, tableName, ttl > 0 ? null : fields);
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
+        }
+
+        /* Store, empty results included so that missing tables do not hit the db */
+        if (ttl > 0) {
+            CACHE.put(key(dataSource, tableName), metadata, ttl * 1000);
+            OTSnapshotStore.markDirty();
+            return metadata.project(fields);
+        }
+        return metadata;
+    }
+
+    /* Reads the metadata of the table from an open connection */
+    public static final OTTableMetadata readTableMetadata(Connection conn, String tableName) throws SQLException {
+        return readTableMetadata(conn, tableName, null);
+    }
+
+    /* Reads the given fields of the metadata of the table, every field when null */
+    public static final OTTableMetadata readTableMetadata(Connection conn, String tableName, String[] fields)
+            throws SQLException {
+        ResultSet rsColumns = null;
+        try {
+            /* Get columns of the table */
+            rsColumns = OTHelper.getColumnsOfTable(conn, tableName);
+
+            /* Labels and their position in the result set */
+            ResultSetMetaData rsmd = rsColumns.getMetaData();
+            List<String> labelList = new ArrayList<>();
+            List<Integer> positionList = new ArrayList<>();
+            if (fields == null || fields.length == 0) {
+                for (int i = 1; i < rsmd.getColumnCount() + 1; i++) {
+                    labelList.add(rsmd.getColumnLabel(i));
+                    positionList.add(i);
+                }
+            } else {
+                for (String field : fields) {
+                    for (int i = 1; i < rsmd.getColumnCount() + 1; i++) {
+                        if (rsmd.getColumnLabel(i).equalsIgnoreCase(field)) {
+                            labelList.add(rsmd.getColumnLabel(i));
+                            positionList.add(i);
+                            break;
+                        }
+                    }
+                }
+            }
+            String[] labels = labelList.toArray(new String[0]);
+            int[] positions = positionList.stream().mapToInt(Integer::intValue).toArray();
+
+            /* Rows */
+            List<String[]> rows = new ArrayList<>();
+            while (rsColumns.next()) {
+                String[] row = new String[labels.length];
+                for (int i = 0; i < labels.length; i++) {
+                    row[i] = rsColumns.getString(positions[i]);
+                }
+                rows.add(row);
+            }
+            return new OTTableMetadata(labels, rows);
+        } finally {
+            if (rsColumns != null) {
+                try {
+                    rsColumns.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
+        }
+    }
+
+    /* Invalidates one table, or every table of the data source when tableName is null */
+    public static final long invalidate(String dataSource, String tableName) {
+        if (dataSource == null) {
+            STALE.clear();
+            return CACHE.invalidateAll();
+        }
+        if (tableName == null) {
+            STALE.keySet().removeIf(k -> k.startsWith(dataSource + SEPARATOR));
+            return CACHE.invalidatePrefix(dataSource + SEPARATOR);
+        }
+        STALE.remove(key(dataSource, tableName));
+        return CACHE.invalidate(key(dataSource, tableName)) ? 1 : 0;
+    }
+
+    /* Cached entries and snapshot entries not served yet, for the snapshot file */
+    public static final Map<String, OTTableMetadata> entries() {
+        Map<String, OTTableMetadata> entries = new LinkedHashMap<>(STALE);
+        entries.putAll(CACHE.entries());
+        return entries;
+    }
+
+    /* Entries read from the snapshot file */
+    public static final void restore(Map<String, OTTableMetadata> entries) {
+        STALE.putAll(entries);
+    }
+
+    /* Cache stats */
+    public static final Map<Object, Object> createStatsMap() {
+        Map<Object, Object> map = new LinkedHashMap<>();
+        map.put(OTHelper.stringTypedValue("hits"), OTHelper.intTypedValue(CACHE.getHits()));
+        map.put(OTHelper.stringTypedValue("misses"), OTHelper.intTypedValue(CACHE.getMisses()));
+        map.put(OTHelper.stringTypedValue("evictions"), OTHelper.intTypedValue(CACHE.getEvictions()));
+        map.put(OTHelper.stringTypedValue("size"), OTHelper.intTypedValue((long) CACHE.size()));
+        map.put(OTHelper.stringTypedValue("maxSize"), OTHelper.intTypedValue((long) CACHE.getMaxEntries()));
+        map.put(OTHelper.stringTypedValue("staleHits"), OTHelper.intTypedValue(STALE_HITS.get()));
+        map.put(OTHelper.stringTypedValue("staleSize"), OTHelper.intTypedValue((long) STALE.size()));
+        return map;
+    }
+}
@@ -0,0 +1,256 @@
+package omni.toolkit;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.appiancorp.suiteapi.type.AppianType;
+import com.appiancorp.suiteapi.type.TypedValue;
+
+public class OTQuery {
+    /* Limits */
+    public static final int DEFAULT_MAX_ROWS = 1000;
+    public static final int MAX_ROWS = 10000;
+    public static final int DEFAULT_FETCH_SIZE = 100;
+    public static final long MAX_BYTES = 8L * 1024 * 1024;
+
+    /* Statements allowed by otQueryDataSource, and keywords that write from within a query */
+    private static final Pattern READ_ONLY = Pattern.compile("^\\s*(\\(\\s*)*(select|with|values)\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern WRITES = Pattern.compile(
+            "\\b(into|insert|update|delete|merge|upsert|create|alter|drop|truncate|grant|revoke|exec|execute|call)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    /* Kinds of column values */
+    private static final int STRING = 0;
+    private static final int INTEGER = 1;
+    private static final int DOUBLE = 2;
+    private static final int BOOLEAN = 3;
+    private static final int DATE = 4;
+    private static final int TIME = 5;
+    private static final int TIMESTAMP = 6;
+
+    /* Rows read, whether a cap was hit and the raw key values of the last row */
+    public static final class Rows {
+        private final List<Map<Object, Object>> rows;
+        private final boolean truncated;
+        private final Object[] lastKey;
+
+        private Rows(List<Map<Object, Object>> rows, boolean truncated, Object[] lastKey) {
+            this.rows = rows;
+            this.truncated = truncated;
+            this.lastKey = lastKey;
+        }
+
+        public List<Map<Object, Object>> getRows() {
+            return this.rows;
+        }
+
+        public boolean isTruncated() {
+            return this.truncated;
+        }
+
+        public Object[] getLastKey() {
+            return this.lastKey;
+        }
+
+        public Map<?, ?>[] toArray() {
+            return this.rows.toArray(new Map[0]);
+        }
+    }
+
+    /*
+     * Whether the statement is a single query. Outside literals, quoted identifiers and comments it must not hold
+     * INTO or a data changing keyword, which rejects SELECT INTO, INTO OUTFILE and writing CTEs. This is a guard
+     * against mistakes, not a security boundary: the data source account itself must be read only.
+     */
+    public static final boolean isReadOnly(String sql) {
+        if (sql == null) {
+            return false;
+        }
+        String code = stripLiterals(sql).trim();
+        if (!READ_ONLY.matcher(code).find() || WRITES.matcher(code).find()) {
+            return false;
+        }
+        int semicolon = code.indexOf(';');
+        return semicolon == -1 || semicolon == code.length() - 1;
+    }
+
+    /* Statement with literals, quoted identifiers and comments replaced by a space */
+    private static final String stripLiterals(String sql) {
+        StringBuilder code = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            int end;
+            if (c == '\'' || c == '"' || c == '`') {
+                /* Doubled quotes are escapes and simply start the next literal */
+                end = sql.indexOf(c, i + 1);
+            } else if (c == '[') {
+                end = sql.indexOf(']', i + 1);
+            } else if (c == '-' && sql.startsWith("--", i)) {
+                end = sql.indexOf('\n', i);
+            } else if (c == '/' && sql.startsWith("/*", i)) {
+                end = sql.indexOf("*/", i + 2);
+                end = end == -1 ? -1 : end + 1;
+            } else {
+                code.append(c);
+                i++;
+                continue;
+            }
+            code.append(' ');
+            i = end == -1 ? sql.length() : end + 1;
+        }
+        return code.toString();
+    }
+
+    /* Row cap between 1 and MAX_ROWS */
+    public static final int rowLimit(Long maxRows) {
+        return maxRows == null || maxRows <= 0 ? DEFAULT_MAX_ROWS : (int) Math.min(maxRows, MAX_ROWS);
+    }
+
+    /* Binds the parameters in order, typed values are unwrapped */
+    public static final void bind(PreparedStatement ps, Object[] params) throws SQLException {
+        if (params == null) {
+            return;
+        }
+        for (int i = 0; i < params.length; i++) {
+            ps.setObject(i + 1, toJdbcValue(params[i]));
+        }
+    }
+
+    /* Parameters of a variant, a single value or a list */
+    public static final Object[] toParams(TypedValue params) {
+        if (params == null || params.getValue() == null) {
+            return new Object[0];
+        }
+        Object value = params.getValue();
+        return value instanceof Object[] ? (Object[]) value : new Object[] { toJdbcValue(params) };
+    }
+
+    /* Plain java value of a typed value, appian booleans become Boolean */
+    public static final Object toJdbcValue(Object value) {
+        if (value instanceof TypedValue) {
+            TypedValue tv = (TypedValue) value;
+            if (tv.getInstanceType() != null && tv.getInstanceType() == AppianType.BOOLEAN
+                    && tv.getValue() instanceof Long) {
+                return ((Long) tv.getValue()) != 0;
+            }
+            return toJdbcValue(tv.getValue());
+        }
+        return value;
+    }
+
+    /* Reads at most maxRows rows or about maxBytes, values typed after the xml type of each column */
+    public static final Rows readRows(ResultSet rs, String dialect, int maxRows, long maxBytes) throws SQLException {
+        return readRows(rs, dialect, maxRows, maxBytes, null);
+    }
+
+    /* Same as above, keeping the raw values of the given 1-based columns of the last row */
+    public static final Rows readRows(ResultSet rs, String dialect, int maxRows, long maxBytes, int[] keyColumns)
+            throws SQLException {
+        /* Labels and kinds */
+        ResultSetMetaData md = rs.getMetaData();
+        int count = md.getColumnCount();
+        TypedValue[] labels = new TypedValue[count];
+        int[] kinds = new int[count];
+        for (int i = 0; i < count; i++) {
+            labels[i] = OTHelper.stringTypedValue(md.getColumnLabel(i + 1));
+            kinds[i] = kindOf(
+                    OTHelper.getXmlDataType(dialect, md.getColumnType(i + 1), md.getColumnTypeName(i + 1)));
+            if (kinds[i] == INTEGER && !isWholeNumber(md, i + 1)) {
+                kinds[i] = DOUBLE;
+            }
+        }
+
+        /* Rows */
+        List<Map<Object, Object>> rows = new ArrayList<>();
+        Object[] lastKey = null;
+        long bytes = 0;
+        while (rows.size() < maxRows && bytes < maxBytes && rs.next()) {
+            Map<Object, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                TypedValue tv = readValue(rs, i + 1, kinds[i]);
+                Object value = tv.getValue();
+                bytes += value instanceof String ? 2L * ((String) value).length() : 8;
+                row.put(labels[i], tv);
+            }
+            rows.add(row);
+            if (keyColumns != null) {
+                lastKey = new Object[keyColumns.length];
+                for (int k = 0; k < keyColumns.length; k++) {
+                    lastKey[k] = OTKeyset.readKey(rs, keyColumns[k], md.getColumnType(keyColumns[k]),
+                            md.getColumnTypeName(keyColumns[k]));
+                }
+            }
+        }
+
+        /* A further row means the result was cut */
+        boolean truncated = (rows.size() >= maxRows || bytes >= maxBytes) && rs.next();
+        return new Rows(rows, truncated, lastKey);
+    }
+
+    /* Decimal columns fit an appian integer only without scale and with at most 9 digits, unconstrained
+     * ones report a precision of 0 */
+    private static final boolean isWholeNumber(ResultSetMetaData md, int column) throws SQLException {
+        int sqlType = md.getColumnType(column);
+        boolean isDecimal = sqlType == Types.NUMERIC || sqlType == Types.DECIMAL
+                || "NUMBER".equalsIgnoreCase(md.getColumnTypeName(column));
+        if (!isDecimal) {
+            return true;
+        }
+        int precision = md.getPrecision(column);
+        return md.getScale(column) == 0 && precision > 0 && precision <= 9;
+    }
+
+    private static final int kindOf(String xmlType) {
+        switch (xmlType) {
+        case "int":
+            return INTEGER;
+        case "double":
+            return DOUBLE;
+        case "boolean":
+            return BOOLEAN;
+        case "date":
+            return DATE;
+        case "time":
+            return TIME;
+        case "dateTime":
+            return TIMESTAMP;
+        default:
+            return STRING;
+        }
+    }
+
+    private static final TypedValue readValue(ResultSet rs, int column, int kind) throws SQLException {
+        switch (kind) {
+        case INTEGER: {
+            long value = rs.getLong(column);
+            return OTHelper.intTypedValue(rs.wasNull() ? null : value);
+        }
+        case DOUBLE: {
+            double value = rs.getDouble(column);
+            return OTHelper.doubleTypedValue(rs.wasNull() ? null : value);
+        }
+        case BOOLEAN: {
+            boolean value = rs.getBoolean(column);
+            return OTHelper.booleanTypedValue(rs.wasNull() ? null : value);
+        }
+        case DATE:
+            return OTHelper.dateTypedValue(rs.getDate(column));
+        case TIME:
+            return OTHelper.timeTypedValue(rs.getTime(column));
+        case TIMESTAMP:
+            return OTHelper.timestampTypedValue(rs.getTimestamp(column));
+        default:
+            return OTHelper.stringTypedValue(rs.getString(column));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package omni.toolkit;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.naming.Context;
+import javax.naming.NamingException;
+
+/*
+ * Foreign keys of a schema. Relations are read with a single getCrossReference call where the driver accepts
+ * null tables, otherwise with one getImportedKeys call per table; exported keys are the same edges seen from the
+ * referenced table, so they are never read separately. Graphs are cached per data source and schema.
+ */
+public class OTRelationGraph {
+    /* Cache */
+    public static final long DEFAULT_TTL_SECONDS = 300;
+    private static final OTTtlCache<OTRelationGraph> CACHE = new OTTtlCache<>(100);
+
+    /* Foreign key from fkTable(fkColumns) to pkTable(pkColumns) */
+    public static final class Relation {
+        private final String name;
+        private final String fkTable;
+        private final String pkTable;
+        private final List<String> fkColumns = new ArrayList<>();
+        private final List<String> pkColumns = new ArrayList<>();
+
+        private Relation(String name, String fkTable, String pkTable) {
+            this.name = name;
+            this.fkTable = fkTable;
+            this.pkTable = pkTable;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public String getFkTable() {
+            return this.fkTable;
+        }
+
+        public String getPkTable() {
+            return this.pkTable;
+        }
+
+        public List<String> getFkColumns() {
+            return this.fkColumns;
+        }
+
+        public List<String> getPkColumns() {
+            return this.pkColumns;
+        }
+    }
+
+    /* Edges by referencing table and by referenced table */
+    private final Map<String, List<Relation>> imported = new HashMap<>();
+    private final Map<String, List<Relation>> exported = new HashMap<>();
+    private final List<Relation> relations = new ArrayList<>();
+
+    /* Relations where table holds the foreign key */
+    public List<Relation> getImported(String tableName) {
+        return this.imported.getOrDefault(tableName, Collections.emptyList());
+    }
+
+    /* Relations where table is referenced */
+    public List<Relation> getExported(String tableName) {
+        return this.exported.getOrDefault(tableName, Collections.emptyList());
+    }
+
+    public List<Relation> getRelations() {
+        return this.relations;
+    }
+
+    /* Returns the graph of the schema, from cache when possible. A ttl of 0 bypasses the cache */
+    public static final OTRelationGraph get(Context ctx, String dataSource, String schema, Long ttlSeconds)
+            throws SQLException, NamingException {
+        long ttl = ttlSeconds == null ? DEFAULT_TTL_SECONDS : ttlSeconds;
+        String key = dataSource + "\u0000" + (schema == null ? "" : schema);
+        OTRelationGraph graph = ttl > 0 ? CACHE.get(key) : null;
+        if (graph != null) {
+            return graph;
+        }
+
+        /* Read from db */
+        Connection conn = null;
+        try {
+            conn = OTHelper.getConnection(ctx, dataSource);
+            graph = read(conn, schema);
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
+        }
+        if (ttl > 0) {
+            CACHE.put(key, graph, ttl * 1000);
+        }
+        return graph;
+    }
+
+    /* Drops the graphs of a data source, every graph when null */
+    public static final long invalidate(String dataSource) {
+        return dataSource == null ? CACHE.invalidateAll() : CACHE.invalidatePrefix(dataSource + "\u0000");
+    }
+
+    /* Reads every foreign key of the schema from an open connection */
+    public static final OTRelationGraph read(Connection conn, String schema) throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+        String schemaPattern = schema == null || schema.isEmpty() ? null : schema;
+        OTRelationGraph graph = new OTRelationGraph();
+        Map<String, Relation> latest = new HashMap<>();
+
+        /* Whole schema at once */
+        boolean read = false;
+        ResultSet rsKeys = null;
+        try {
+            rsKeys = md.getCrossReference(null, schemaPattern, null, null, schemaPattern, null);
+            read = graph.addKeys(rsKeys, latest);
+        } catch (SQLException e) {
+            /* Driver needs table names */
+        } finally {
+            if (rsKeys != null) {
+                try {
+                    rsKeys.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
+        }
+
+        /* One call per table */
+        if (!read) {
+            List<String> tables = new ArrayList<>();
+            ResultSet rsTables = md.getTables(null, schemaPattern, "%", new String[] { "TABLE" });
+            try {
+                while (rsTables.next()) {
+                    tables.add(rsTables.getString("TABLE_NAME"));
+                }
+            } finally {
+                rsTables.close();
+            }
+            for (String tableName : tables) {
+                rsKeys = md.getImportedKeys(null, schemaPattern, tableName);
+                try {
+                    graph.addKeys(rsKeys, latest);
+                } finally {
+                    rsKeys.close();
+                }
+            }
+        }
+
+        /* Index */
+        for (Relation relation : graph.relations) {
+            graph.imported.computeIfAbsent(relation.fkTable, k -> new ArrayList<>()).add(relation);
+            graph.exported.computeIfAbsent(relation.pkTable, k -> new ArrayList<>()).add(relation);
+        }
+        return graph;
+    }
+
+    /* Groups key rows into relations, rows of a composite key come ordered by KEY_SEQ */
+    private boolean addKeys(ResultSet rsKeys, Map<String, Relation> latest) throws SQLException {
+        boolean any = false;
+        while (rsKeys.next()) {
+            any = true;
+            String fkTable = rsKeys.getString("FKTABLE_NAME");
+            String pkTable = rsKeys.getString("PKTABLE_NAME");
+            String fkName = rsKeys.getString("FK_NAME");
+            short keySeq = rsKeys.getShort("KEY_SEQ");
+
+            /* A new relation starts when KEY_SEQ restarts, which also tells unnamed keys apart */
+            String key = fkTable + "\u0000" + pkTable + "\u0000" + (fkName == null ? "" : fkName);
+            Relation relation = latest.get(key);
+            if (relation == null || keySeq <= relation.fkColumns.size()) {
+                relation = new Relation(fkName, fkTable, pkTable);
+                latest.put(key, relation);
+                this.relations.add(relation);
+            }
+            relation.fkColumns.add(rsKeys.getString("FKCOLUMN_NAME"));
+            relation.pkColumns.add(rsKeys.getString("PKCOLUMN_NAME"));
+        }
+        return any;
+    }
+}
@@ -0,0 +1,305 @@
+package omni.toolkit;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/*
+ * Compact schema snapshot, one tab separated line per table and per column:
+ *
+ *   T  table  hash
+ *   C  column  typeName  dataType  size  nullable  autoGenerated  keySeq
+ *
+ * The hash covers the column lines of the table, so two snapshots only compare the columns of tables whose
+ * hashes differ. Tables are keyed by name, the first schema wins like in otGetDataSourceXsd.
+ */
+public class OTSchemaSnapshot {
+    /* Format */
+    private static final String HEADER = "# omni-toolkit schema snapshot v1";
+
+    /* Table and its column lines by column name */
+    public static final class Table {
+        private final String name;
+        private final Map<String, String> columns = new LinkedHashMap<>();
+        private String hash;
+
+        private Table(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public String getHash() {
+            return this.hash;
+        }
+    }
+
+    /* Difference of a table */
+    public static final class Change {
+        private final String tableName;
+        private final String change;
+        private final List<String> addedColumns = new ArrayList<>();
+        private final List<String> removedColumns = new ArrayList<>();
+        private final List<String> changedColumns = new ArrayList<>();
+
+        private Change(String tableName, String change) {
+            this.tableName = tableName;
+            this.change = change;
+        }
+
+        public String getTableName() {
+            return this.tableName;
+        }
+
+        /* added, removed or changed */
+        public String getChange() {
+            return this.change;
+        }
+
+        public List<String> getAddedColumns() {
+            return this.addedColumns;
+        }
+
+        public List<String> getRemovedColumns() {
+            return this.removedColumns;
+        }
+
+        public List<String> getChangedColumns() {
+            return this.changedColumns;
+        }
+    }
+
+    /* Tables by name, sorted */
+    private final Map<String, Table> tables = new TreeMap<>();
+
+    public Map<String, Table> getTables() {
+        return this.tables;
+    }
+
+    /* Drops the tables outside the patterns, so that a stored snapshot compares like a filtered capture */
+    public final OTSchemaSnapshot filter(String includePattern, String excludePattern) {
+        Pattern include = compile(includePattern);
+        Pattern exclude = compile(excludePattern);
+        this.tables.keySet().removeIf(tableName -> !isIncluded(tableName, include, exclude));
+        return this;
+    }
+
+    private static final Pattern compile(String pattern) {
+        return pattern == null || pattern.isEmpty() ? null : Pattern.compile(pattern);
+    }
+
+    private static final boolean isIncluded(String tableName, Pattern include, Pattern exclude) {
+        return (include == null || include.matcher(tableName).matches())
+                && (exclude == null || !exclude.matcher(tableName).matches());
+    }
+
+    /* Snapshot of the data source from one getColumns scan, primary keys from one call where the driver
+     * accepts a null table and table by table otherwise */
+    public static final OTSchemaSnapshot capture(Connection conn, String includePattern, String excludePattern)
+            throws SQLException, NoSuchAlgorithmException {
+        Pattern include = compile(includePattern);
+        Pattern exclude = compile(excludePattern);
+        OTSchemaSnapshot snapshot = new OTSchemaSnapshot();
+
+        /* Columns */
+        Map<String, String> schemas = new HashMap<>();
+        Map<String, List<OTColumn>> columns = new LinkedHashMap<>();
+        ResultSet rsColumns = OTHelper.getColumnsOfDataSource(conn);
+        try {
+            while (rsColumns.next()) {
+                OTColumn column = OTColumn.fromResultSet(rsColumns);
+                String tableName = column.getTableName();
+                if (!isIncluded(tableName, include, exclude)
+                        || (schemas.containsKey(tableName)
+                                && !Objects.equals(schemas.get(tableName), column.getTableSchema()))) {
+                    continue;
+                }
+                schemas.put(tableName, column.getTableSchema());
+                columns.computeIfAbsent(tableName, k -> new ArrayList<>()).add(column);
+            }
+        } finally {
+            rsColumns.close();
+        }
+
+        /* Keys */
+        Map<String, Map<String, Short>> keys = readPrimaryKeys(conn, schemas);
+
+        /* Lines and hashes */
+        for (Map.Entry<String, List<OTColumn>> entry : columns.entrySet()) {
+            Table table = new Table(entry.getKey());
+            Map<String, Short> tableKeys = keys.getOrDefault(entry.getKey(), new HashMap<>());
+            for (OTColumn column : entry.getValue()) {
+                Short keySeq = tableKeys.get(column.getName());
+                table.columns.put(column.getName(), String.join("\t", "C", escape(column.getName()),
+                        escape(column.getTypeName()), String.valueOf(column.getDataType()),
+                        String.valueOf(column.getSize()), column.isNullable() ? "1" : "0",
+                        column.isAutoGenerated() ? "1" : "0", keySeq == null ? "0" : keySeq.toString()));
+            }
+            table.hash = hash(table);
+            snapshot.tables.put(table.name, table);
+        }
+        return snapshot;
+    }
+
+    /* Primary key columns and their KEY_SEQ by table */
+    private static final Map<String, Map<String, Short>> readPrimaryKeys(Connection conn, Map<String, String> schemas)
+            throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+        Map<String, Map<String, Short>> keys = new HashMap<>();
+
+        /* Every table at once */
+        try {
+            ResultSet rsKeys = md.getPrimaryKeys(null, null, null);
+            try {
+                addKeys(rsKeys, schemas, keys);
+            } finally {
+                rsKeys.close();
+            }
+            if (!keys.isEmpty() || schemas.isEmpty()) {
+                return keys;
+            }
+        } catch (SQLException e) {
+            /* Driver needs table names */
+        }
+
+        /* Table by table */
+        for (Map.Entry<String, String> entry : schemas.entrySet()) {
+            ResultSet rsKeys = md.getPrimaryKeys(null, entry.getValue(), entry.getKey());
+            try {
+                addKeys(rsKeys, schemas, keys);
+            } finally {
+                rsKeys.close();
+            }
+        }
+        return keys;
+    }
+
+    private static final void addKeys(ResultSet rsKeys, Map<String, String> schemas,
+            Map<String, Map<String, Short>> keys) throws SQLException {
+        while (rsKeys.next()) {
+            String tableName = rsKeys.getString("TABLE_NAME");
+            if (schemas.containsKey(tableName)
+                    && Objects.equals(schemas.get(tableName), rsKeys.getString("TABLE_SCHEM"))) {
+                keys.computeIfAbsent(tableName, k -> new HashMap<>()).put(rsKeys.getString("COLUMN_NAME"),
+                        rsKeys.getShort("KEY_SEQ"));
+            }
+        }
+    }
+
+    /* Writes the snapshot as utf-8 text */
+    public void write(OutputStream stream, String dataSource) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        out.write(HEADER);
+        out.write("\n# dataSource\t" + escape(dataSource) + "\n");
+        for (Table table : this.tables.values()) {
+            out.write("T\t" + escape(table.name) + "\t" + table.hash + "\n");
+            for (String line : table.columns.values()) {
+                out.write(line);
+                out.write('\n');
+            }
+        }
+        out.flush();
+    }
+
+    /* Reads a snapshot written by write */
+    public static final OTSchemaSnapshot read(InputStream stream) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        if (!HEADER.equals(in.readLine())) {
+            throw new IOException("Not a schema snapshot");
+        }
+        OTSchemaSnapshot snapshot = new OTSchemaSnapshot();
+        Table table = null;
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] fields = line.split("\t", -1);
+            if (line.startsWith("T\t") && fields.length == 3) {
+                table = new Table(unescape(fields[1]));
+                table.hash = fields[2];
+                snapshot.tables.put(table.name, table);
+            } else if (line.startsWith("C\t") && table != null && fields.length > 2) {
+                table.columns.put(unescape(fields[1]), line);
+            }
+        }
+        return snapshot;
+    }
+
+    /* Changes from base to target, tables with the same hash are skipped without comparing columns */
+    public static final List<Change> diff(OTSchemaSnapshot base, OTSchemaSnapshot target) {
+        List<Change> changes = new ArrayList<>();
+        for (Table table : base.tables.values()) {
+            Table other = target.tables.get(table.name);
+            if (other == null) {
+                changes.add(new Change(table.name, "removed"));
+            } else if (!table.hash.equals(other.hash)) {
+                Change change = new Change(table.name, "changed");
+                for (Map.Entry<String, String> column : other.columns.entrySet()) {
+                    String line = table.columns.get(column.getKey());
+                    if (line == null) {
+                        change.addedColumns.add(column.getKey());
+                    } else if (!line.equals(column.getValue())) {
+                        change.changedColumns.add(column.getKey());
+                    }
+                }
+                for (String columnName : table.columns.keySet()) {
+                    if (!other.columns.containsKey(columnName)) {
+                        change.removedColumns.add(columnName);
+                    }
+                }
+                changes.add(change);
+            }
+        }
+        for (Table table : target.tables.values()) {
+            if (!base.tables.containsKey(table.name)) {
+                Change change = new Change(table.name, "added");
+                change.addedColumns.addAll(table.columns.keySet());
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+    /* First 16 hex chars of the sha-256 of the column lines */
+    private static final String hash(Table table) throws NoSuchAlgorithmException {
+        return OTDataTypeSync.fingerprint(String.join("\n", table.columns.values()).getBytes(StandardCharsets.UTF_8))
+                .substring(0, 16);
+    }
+
+    private static final String escape(String value) {
+        return value == null ? "" : value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static final String unescape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char n = value.charAt(++i);
+                sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
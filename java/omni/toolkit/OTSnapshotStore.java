@@ -0,0 +1,340 @@
+package omni.toolkit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Local file with the table metadata, custom type mappings and datatype fingerprints of the last run, so that a
+ * redeploy starts warm. The file is read once at first use, metadata read from it is served while a fresh copy
+ * is loaded in the background, and it is written back periodically when something changed.
+ *
+ * Format, gzip compressed:
+ *
+ *   int magic "OTMS", int version, long savedAt
+ *   int n, n x (key, int labels, labels, int rows, rows x labels values)   table metadata
+ *   int n, n x (dialect, typeName, xmlType)                                 custom type mappings
+ *   int n, n x (key, fingerprint, int ids, ids x long)                      datatype imports
+ *
+ * Strings are an int byte length, -1 for null, followed by the utf-8 bytes.
+ */
+public class OTSnapshotStore {
+    /* Format */
+    private static final int MAGIC = 0x4F544D53;
+    private static final int VERSION = 1;
+
+    /* Location, overridden by the omni.toolkit.snapshot system property. The default directory in the home of
+     * the process user is created readable by that user only */
+    public static final String PATH_PROPERTY = "omni.toolkit.snapshot";
+    private static final String DEFAULT_DIRECTORY = ".omni-toolkit";
+    private static final String DEFAULT_FILE_NAME = "metadata.bin";
+
+    /* Periodic save */
+    private static final long SAVE_INTERVAL_SECONDS = 300;
+
+    /* Saver of the latest plugin deployment, a redeploy takes the property over and the old saver stops */
+    private static final String OWNER_PROPERTY = "omni.toolkit.snapshot.owner";
+    private static final String OWNER = UUID.randomUUID().toString();
+
+    /* State */
+    private static final Object LOCK = new Object();
+    private static volatile boolean loaded = false;
+    private static boolean loading = false;
+    private static final AtomicBoolean DIRTY = new AtomicBoolean();
+    private static ScheduledExecutorService saver;
+
+    /* Snapshot file */
+    public static final File getFile() {
+        String path = System.getProperty(PATH_PROPERTY);
+        return path == null || path.isEmpty()
+                ? new File(new File(System.getProperty("user.home"), DEFAULT_DIRECTORY), DEFAULT_FILE_NAME)
+                : new File(path);
+    }
+
+    /* Reads the file once, callers racing the first read wait for it */
+    public static final void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (LOCK) {
+            /* Caches filled by the read may call back in on this thread */
+            if (loaded || loading) {
+                return;
+            }
+            loading = true;
+            try {
+                File file = getFile();
+                if (file.isFile()) {
+                    try {
+                        checkTrusted(file.toPath());
+                        read(file);
+                        DIRTY.set(false);
+                    } catch (Exception e) {
+                        /* Unreadable or older version, rebuilt at the next save */
+                        OTHelper.logError("Snapshot " + file + " ignored: " + e.getMessage());
+                    }
+                }
+                System.setProperty(OWNER_PROPERTY, OWNER);
+                saver = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "omni-toolkit-snapshot");
+                    t.setDaemon(true);
+                    return t;
+                });
+                saver.scheduleWithFixedDelay(() -> {
+                    if (!OWNER.equals(System.getProperty(OWNER_PROPERTY))) {
+                        shutdown();
+                    } else if (DIRTY.get()) {
+                        try {
+                            save();
+                        } catch (Exception e) {
+                            OTHelper.logError("Snapshot not saved: " + e.getMessage());
+                        }
+                    }
+                }, SAVE_INTERVAL_SECONDS, SAVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            } finally {
+                loading = false;
+                loaded = true;
+            }
+        }
+    }
+
+    /* Stops the periodic save, also done by the saver itself once a newer deployment owns the file */
+    public static final void shutdown() {
+        synchronized (LOCK) {
+            if (saver != null) {
+                saver.shutdown();
+                saver = null;
+            }
+        }
+    }
+
+    /* Something worth saving changed */
+    public static final void markDirty() {
+        DIRTY.set(true);
+    }
+
+    /* Writes the file through a temporary file of its own, returns the number of entries written */
+    public static final long save() throws IOException {
+        synchronized (LOCK) {
+            DIRTY.set(false);
+            File file = getFile().getAbsoluteFile();
+            createDirectory(file.getParentFile().toPath());
+            /* Temporary files are created readable by the owner only */
+            Path tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+            long count = 0;
+            DataOutputStream out = null;
+            boolean moved = false;
+            try {
+                out = new DataOutputStream(
+                        new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp))));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(System.currentTimeMillis());
+
+                /* Table metadata */
+                Map<String, OTTableMetadata> metadata = OTMetadataCache.entries();
+                out.writeInt(metadata.size());
+                for (Map.Entry<String, OTTableMetadata> entry : metadata.entrySet()) {
+                    String[] labels = entry.getValue().getLabels();
+                    writeString(out, entry.getKey());
+                    out.writeInt(labels.length);
+                    for (String label : labels) {
+                        writeString(out, label);
+                    }
+                    out.writeInt(entry.getValue().getRows().size());
+                    for (String[] row : entry.getValue().getRows()) {
+                        for (String value : row) {
+                            writeString(out, value);
+                        }
+                    }
+                }
+
+                /* Type mappings */
+                List<String[]> mappings = OTTypeRegistry.getCustomMappings();
+                out.writeInt(mappings.size());
+                for (String[] mapping : mappings) {
+                    writeString(out, mapping[0]);
+                    writeString(out, mapping[1]);
+                    writeString(out, mapping[2]);
+                }
+
+                /* Datatype imports */
+                Map<String, OTDataTypeSync.Result> imports = OTDataTypeSync.entries();
+                out.writeInt(imports.size());
+                for (Map.Entry<String, OTDataTypeSync.Result> entry : imports.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue().getFingerprint());
+                    out.writeInt(entry.getValue().getTypeIds().length);
+                    for (Long typeId : entry.getValue().getTypeIds()) {
+                        out.writeLong(typeId);
+                    }
+                }
+                count = metadata.size() + mappings.size() + imports.size();
+                out.close();
+                out = null;
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                moved = true;
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        /* Ignored */}
+                }
+                if (!moved) {
+                    DIRTY.set(true);
+                    try {
+                        Files.deleteIfExists(tmp);
+                    } catch (IOException e) {
+                        /* Ignored */}
+                }
+            }
+            return count;
+        }
+    }
+
+    /* The file feeds type mappings and datatype fingerprints, so only one owned by the process user and not
+     * writable by anyone else is read */
+    private static final void checkTrusted(Path path) throws IOException {
+        UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!user.equals(Files.getOwner(path, LinkOption.NOFOLLOW_LINKS))) {
+            throw new IOException("Not owned by " + user.getName());
+        }
+        if (isPosix(path)) {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS);
+            if (permissions.contains(PosixFilePermission.GROUP_WRITE)
+                    || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+                throw new IOException("Writable by other users");
+            }
+        }
+    }
+
+    /* Missing directories are created for the owner only */
+    private static final void createDirectory(Path directory) throws IOException {
+        if (Files.isDirectory(directory)) {
+            return;
+        }
+        if (isPosix(directory)) {
+            Files.createDirectories(directory,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } else {
+            Files.createDirectories(directory);
+        }
+    }
+
+    private static final boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    private static final void read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version);
+            }
+            in.readLong();
+
+            /* Table metadata, applied only once the whole section is read */
+            int count = in.readInt();
+            Map<String, OTTableMetadata> metadata = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String key = readString(in);
+                String[] labels = new String[in.readInt()];
+                for (int l = 0; l < labels.length; l++) {
+                    labels[l] = readString(in);
+                }
+                int rowCount = in.readInt();
+                List<String[]> rows = new ArrayList<>(rowCount);
+                for (int r = 0; r < rowCount; r++) {
+                    String[] row = new String[labels.length];
+                    for (int l = 0; l < labels.length; l++) {
+                        row[l] = readString(in);
+                    }
+                    rows.add(row);
+                }
+                metadata.put(key, new OTTableMetadata(labels, rows));
+            }
+
+            /* Type mappings */
+            count = in.readInt();
+            List<String[]> mappings = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                mappings.add(new String[] { readString(in), readString(in), readString(in) });
+            }
+
+            /* Datatype imports */
+            count = in.readInt();
+            Map<String, Object[]> imports = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String key = readString(in);
+                String fingerprint = readString(in);
+                Long[] typeIds = new Long[in.readInt()];
+                for (int t = 0; t < typeIds.length; t++) {
+                    typeIds[t] = in.readLong();
+                }
+                imports.put(key, new Object[] { fingerprint, typeIds });
+            }
+
+            /* Apply */
+            OTMetadataCache.restore(metadata);
+            for (String[] mapping : mappings) {
+                OTTypeRegistry.registerCustom(mapping[0], mapping[1], mapping[2]);
+            }
+            for (Map.Entry<String, Object[]> entry : imports.entrySet()) {
+                OTDataTypeSync.restore(entry.getKey(), (String) entry.getValue()[0], (Long[]) entry.getValue()[1]);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static final void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static final String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,136 @@
+package omni.toolkit;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+public class OTTableKeys {
+    /* Index and its columns in order */
+    public static final class Index {
+        private final String name;
+        private final boolean unique;
+        private final List<String> columns = new ArrayList<>();
+
+        private Index(String name, boolean unique) {
+            this.name = name;
+            this.unique = unique;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public boolean isUnique() {
+            return this.unique;
+        }
+
+        public List<String> getColumns() {
+            return this.columns;
+        }
+    }
+
+    /* Primary key */
+    private final String primaryKeyName;
+    private final List<String> primaryKey;
+
+    /* Indexes, read only when asked */
+    private final List<Index> indexes;
+
+    /* Columns that are unique on their own */
+    private final Set<String> uniqueColumns = new HashSet<>();
+
+    private OTTableKeys(String primaryKeyName, List<String> primaryKey, List<Index> indexes) {
+        this.primaryKeyName = primaryKeyName;
+        this.primaryKey = primaryKey;
+        this.indexes = indexes;
+        if (primaryKey.size() == 1) {
+            this.uniqueColumns.add(primaryKey.get(0));
+        }
+        for (Index index : indexes) {
+            if (index.unique && index.columns.size() == 1) {
+                this.uniqueColumns.add(index.columns.get(0));
+            }
+        }
+    }
+
+    /* Reads the primary key and, when asked, the indexes of a table from an open connection */
+    public static final OTTableKeys read(Connection conn, String schema, String tableName, boolean includeIndexes)
+            throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+
+        /* Primary key in KEY_SEQ order */
+        String primaryKeyName = null;
+        Map<Short, String> primaryKey = new TreeMap<>();
+        ResultSet rsKeys = md.getPrimaryKeys(null, schema, tableName);
+        try {
+            while (rsKeys.next()) {
+                primaryKeyName = rsKeys.getString("PK_NAME");
+                primaryKey.put(rsKeys.getShort("KEY_SEQ"), rsKeys.getString("COLUMN_NAME"));
+            }
+        } finally {
+            rsKeys.close();
+        }
+
+        /* Indexes, statistics rows have no name and are skipped */
+        Map<String, Index> indexes = new LinkedHashMap<>();
+        if (includeIndexes) {
+            ResultSet rsIndexes = md.getIndexInfo(null, schema, tableName, false, true);
+            try {
+                while (rsIndexes.next()) {
+                    String indexName = rsIndexes.getString("INDEX_NAME");
+                    String columnName = rsIndexes.getString("COLUMN_NAME");
+                    if (indexName == null || columnName == null
+                            || rsIndexes.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+                        continue;
+                    }
+                    Index index = indexes.get(indexName);
+                    if (index == null) {
+                        index = new Index(indexName, !rsIndexes.getBoolean("NON_UNIQUE"));
+                        indexes.put(indexName, index);
+                    }
+                    index.columns.add(columnName);
+                }
+            } finally {
+                rsIndexes.close();
+            }
+        }
+        return new OTTableKeys(primaryKeyName, new ArrayList<>(primaryKey.values()),
+                new ArrayList<>(indexes.values()));
+    }
+
+    public String getPrimaryKeyName() {
+        return this.primaryKeyName;
+    }
+
+    public List<String> getPrimaryKey() {
+        return this.primaryKey;
+    }
+
+    public List<Index> getIndexes() {
+        return this.indexes;
+    }
+
+    /* Whether the table has a primary key */
+    public boolean hasPrimaryKey() {
+        return !this.primaryKey.isEmpty();
+    }
+
+    /* Part of the primary key, the "id" naming convention applies to tables without one */
+    public boolean isId(String columnName) {
+        return hasPrimaryKey() ? this.primaryKey.contains(columnName) : columnName.toLowerCase().equals("id");
+    }
+
+    /* Unique on its own, through the primary key or a unique index */
+    public boolean isUnique(String columnName) {
+        return this.uniqueColumns.contains(columnName)
+                || (!hasPrimaryKey() && columnName.toLowerCase().equals("id"));
+    }
+}
@@ -0,0 +1,64 @@
+package omni.toolkit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OTTableMetadata {
+    /* Labels of the metadata fields returned by DatabaseMetaData.getColumns */
+    private final String[] labels;
+
+    /* One row per column of the table, values in the same order as labels */
+    private final List<String[]> rows;
+
+    public OTTableMetadata(String[] labels, List<String[]> rows) {
+        this.labels = labels;
+        this.rows = rows;
+    }
+
+    public String[] getLabels() {
+        return this.labels;
+    }
+
+    public List<String[]> getRows() {
+        return this.rows;
+    }
+
+    public boolean isEmpty() {
+        return this.rows.isEmpty();
+    }
+
+    /* Index of a label, case insensitive, -1 if missing */
+    public int indexOf(String label) {
+        for (int i = 0; i < this.labels.length; i++) {
+            if (this.labels[i].equalsIgnoreCase(label)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /* Copy restricted to the given fields, in their order, unknown fields are skipped */
+    public OTTableMetadata project(String[] fields) {
+        if (fields == null || fields.length == 0) {
+            return this;
+        }
+        List<Integer> indexes = new ArrayList<>();
+        List<String> projectedLabels = new ArrayList<>();
+        for (String field : fields) {
+            int index = indexOf(field);
+            if (index != -1) {
+                indexes.add(index);
+                projectedLabels.add(this.labels[index]);
+            }
+        }
+        List<String[]> projectedRows = new ArrayList<>(this.rows.size());
+        for (String[] row : this.rows) {
+            String[] projectedRow = new String[indexes.size()];
+            for (int i = 0; i < projectedRow.length; i++) {
+                projectedRow[i] = row[indexes.get(i)];
+            }
+            projectedRows.add(projectedRow);
+        }
+        return new OTTableMetadata(projectedLabels.toArray(new String[0]), projectedRows);
+    }
+}
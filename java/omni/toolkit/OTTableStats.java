@@ -0,0 +1,319 @@
+package omni.toolkit;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+/*
+ * Row counts and sizes of tables. Catalog statistics are used where the dialect keeps them, they are estimates
+ * refreshed by the database's own analyze jobs; otherwise rows are counted up to a cap.
+ */
+public class OTTableStats {
+    /* Defaults */
+    public static final long DEFAULT_TTL_SECONDS = 600;
+    public static final long DEFAULT_COUNT_CAP = 1000000;
+    private static final int QUERY_TIMEOUT_SECONDS = 10;
+    private static final long TIMEOUT_SECONDS = 120;
+
+    /* Cache */
+    private static final OTTtlCache<OTTableStats> CACHE = new OTTtlCache<>(10000);
+
+    /* Sources */
+    public static final String CATALOG = "catalog";
+    public static final String COUNT = "count";
+
+    /* Catalog queries, the table name then its schema in each further parameter, row count and size in bytes. The
+     * schema comes from the driver's table list and is null when it does not report one */
+    private static final String POSTGRESQL_QUERY = "SELECT c.reltuples::bigint, pg_total_relation_size(c.oid) "
+            + "FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace "
+            + "WHERE c.relname = ? AND c.relkind IN ('r', 'p') AND n.nspname = COALESCE(CAST(? AS text), n.nspname) "
+            + "AND (CAST(? AS text) IS NOT NULL OR pg_table_is_visible(c.oid))";
+    private static final String SQLSERVER_QUERY = "SELECT "
+            + "(SELECT SUM(p.rows) FROM sys.partitions p WHERE p.object_id = t.object_id AND p.index_id IN (0, 1)), "
+            + "(SELECT SUM(a.total_pages) * 8192 FROM sys.partitions p JOIN sys.allocation_units a "
+            + "ON a.container_id = p.partition_id WHERE p.object_id = t.object_id) "
+            + "FROM sys.tables t WHERE t.name = ? AND t.schema_id = COALESCE(SCHEMA_ID(?), SCHEMA_ID())";
+    private static final String ORACLE_QUERY = "SELECT NUM_ROWS, NUM_ROWS * AVG_ROW_LEN FROM ALL_TABLES "
+            + "WHERE TABLE_NAME = ? AND OWNER = COALESCE(?, USER)";
+    private static final String MYSQL_QUERY = "SELECT TABLE_ROWS, DATA_LENGTH + INDEX_LENGTH "
+            + "FROM information_schema.TABLES WHERE TABLE_NAME = ? AND TABLE_SCHEMA = COALESCE(?, DATABASE())";
+    private static final String DB2_QUERY = "SELECT CARD, NULL FROM SYSCAT.TABLES "
+            + "WHERE TABNAME = ? AND TABSCHEMA = COALESCE(?, CURRENT SCHEMA)";
+
+    /* Values */
+    private final Long rowCount;
+    private final Long sizeBytes;
+    private final String source;
+    private final boolean exact;
+
+    private OTTableStats(Long rowCount, Long sizeBytes, String source, boolean exact) {
+        this.rowCount = rowCount;
+        this.sizeBytes = sizeBytes;
+        this.source = source;
+        this.exact = exact;
+    }
+
+    public Long getRowCount() {
+        return this.rowCount;
+    }
+
+    public Long getSizeBytes() {
+        return this.sizeBytes;
+    }
+
+    /* catalog or count */
+    public String getSource() {
+        return this.source;
+    }
+
+    /* False for catalog estimates and for counts that hit the cap */
+    public boolean isExact() {
+        return this.exact;
+    }
+
+    /* Stats of the table from an open connection, catalog first */
+    public static final OTTableStats read(Connection conn, String dialect, String tableName, String schema,
+            long countCap) throws SQLException {
+        OTTableStats stats = readCatalog(conn, dialect, tableName, schema);
+        return stats != null ? stats : count(conn, dialect, tableName, countCap);
+    }
+
+    private static final OTTableStats readCatalog(Connection conn, String dialect, String tableName,
+            String schema) {
+        String sql = catalogQuery(dialect);
+        if (sql == null) {
+            return null;
+        }
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = conn.prepareStatement(sql);
+            ps.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            ps.setString(1, tableName);
+            for (int p = 2; p <= sql.length() - sql.replace("?", "").length(); p++) {
+                ps.setString(p, schema);
+            }
+            rs = ps.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+            long rows = rs.getLong(1);
+            if (rs.wasNull() || rows < 0) {
+                /* Never analyzed */
+                return null;
+            }
+            long size = rs.getLong(2);
+            return new OTTableStats(rows, rs.wasNull() ? null : size, CATALOG, false);
+        } catch (SQLException e) {
+            /* No access to the catalog */
+            return null;
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
+            if (ps != null) {
+                try {
+                    ps.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
+        }
+    }
+
+    /* Schemas of the tables from one getTables scan, the first schema wins like in otGetDataSourceXsd and mysql
+     * keeps it in the catalog column. Every table ends up in the map, with null when it was not found */
+    private static final void readSchemas(Connection conn, String dialect, String[] tableNames,
+            Map<String, String> schemas) {
+        Set<String> wanted = new HashSet<>(Arrays.asList(tableNames));
+        boolean isMysql = OTTypeRegistry.MYSQL.equals(dialect) || OTTypeRegistry.MARIADB.equals(dialect);
+        ResultSet rs = null;
+        try {
+            rs = OTHelper.getTablesOfDataSource(conn);
+            while (!wanted.isEmpty() && rs.next()) {
+                String tableName = rs.getString("TABLE_NAME");
+                if (wanted.remove(tableName)) {
+                    schemas.put(tableName, rs.getString(isMysql ? "TABLE_CAT" : "TABLE_SCHEM"));
+                }
+            }
+        } catch (SQLException e) {
+            /* Default schema */
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
+        }
+        for (String tableName : tableNames) {
+            schemas.putIfAbsent(tableName, null);
+        }
+    }
+
+    private static final String catalogQuery(String dialect) {
+        if (OTTypeRegistry.POSTGRESQL.equals(dialect)) {
+            return POSTGRESQL_QUERY;
+        } else if (OTTypeRegistry.SQLSERVER.equals(dialect)) {
+            return SQLSERVER_QUERY;
+        } else if (OTTypeRegistry.ORACLE.equals(dialect)) {
+            return ORACLE_QUERY;
+        } else if (OTTypeRegistry.MYSQL.equals(dialect) || OTTypeRegistry.MARIADB.equals(dialect)) {
+            return MYSQL_QUERY;
+        } else if (OTTypeRegistry.DB2.equals(dialect)) {
+            return DB2_QUERY;
+        }
+        return null;
+    }
+
+    /* Counts at most cap + 1 rows, so that a count over the cap is known to be partial */
+    private static final OTTableStats count(Connection conn, String dialect, String tableName, long cap)
+            throws SQLException {
+        String table = OTKeyset.quote(conn.getMetaData().getIdentifierQuoteString(), tableName);
+        long limit = cap + 1;
+        String sql;
+        if (OTTypeRegistry.POSTGRESQL.equals(dialect) || OTTypeRegistry.MYSQL.equals(dialect)
+                || OTTypeRegistry.MARIADB.equals(dialect)) {
+            sql = "SELECT COUNT(*) FROM (SELECT 1 AS c FROM " + table + " LIMIT " + limit + ") x";
+        } else if (OTTypeRegistry.SQLSERVER.equals(dialect)) {
+            sql = "SELECT COUNT(*) FROM (SELECT TOP " + limit + " 1 AS c FROM " + table + ") x";
+        } else if (OTTypeRegistry.ORACLE.equals(dialect)) {
+            sql = "SELECT COUNT(*) FROM " + table + " WHERE ROWNUM <= " + limit;
+        } else if (OTTypeRegistry.DB2.equals(dialect)) {
+            sql = "SELECT COUNT(*) FROM (SELECT 1 AS c FROM " + table + " FETCH FIRST " + limit + " ROWS ONLY) x";
+        } else {
+            sql = null;
+        }
+
+        Statement st = conn.createStatement();
+        ResultSet rs = null;
+        try {
+            st.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            long rows = 0;
+            if (sql != null) {
+                rs = st.executeQuery(sql);
+                rows = rs.next() ? rs.getLong(1) : 0;
+            } else {
+                /* Unknown dialect, walk the rows */
+                st.setMaxRows((int) Math.min(limit, Integer.MAX_VALUE));
+                rs = st.executeQuery("SELECT 1 FROM " + table);
+                while (rs.next()) {
+                    rows++;
+                }
+            }
+            return rows > cap ? new OTTableStats(cap, null, COUNT, false) : new OTTableStats(rows, null, COUNT, true);
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    /* Ignored */}
+            }
+            st.close();
+        }
+    }
+
+    /* Stats of many tables of one data source. Each lane holds one connection and a permit of the data source,
+     * results and errors come back in input order */
+    public static final void collect(DataSource handle, String dataSource, String[] tableNames, Long ttlSeconds,
+            long countCap, int lanes, OTTableStats[] stats, String[] errors) {
+        long ttl = ttlSeconds == null ? DEFAULT_TTL_SECONDS : ttlSeconds;
+
+        /* Cached entries first */
+        ConcurrentLinkedQueue<Integer> queue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < tableNames.length; i++) {
+            stats[i] = ttl > 0 ? CACHE.get(key(dataSource, tableNames[i])) : null;
+            if (stats[i] == null) {
+                queue.add(i);
+            }
+        }
+
+        /* Fan out, the first lane resolves the schemas for every lane */
+        Map<String, String> schemas = new HashMap<>();
+        List<Future<?>> futures = new ArrayList<>();
+        int count = Math.min(lanes, queue.size());
+        for (int lane = 0; lane < count; lane++) {
+            futures.add(OTExecutor.submit(() -> OTExecutor.withPermit(dataSource, () -> {
+                Connection conn = OTDataSourceCache.getConnection(handle, dataSource);
+                try {
+                    String dialect = OTTypeRegistry.getDialect(conn);
+                    if (catalogQuery(dialect) != null) {
+                        synchronized (schemas) {
+                            if (schemas.isEmpty()) {
+                                readSchemas(conn, dialect, tableNames, schemas);
+                            }
+                        }
+                    }
+                    Integer i;
+                    while ((i = queue.poll()) != null) {
+                        try {
+                            String schema;
+                            synchronized (schemas) {
+                                schema = schemas.get(tableNames[i]);
+                            }
+                            OTTableStats tableStats = read(conn, dialect, tableNames[i], schema, countCap);
+                            /* A capped count depends on the cap of the call, so it is not shared */
+                            if (ttl > 0 && (tableStats.isExact() || CATALOG.equals(tableStats.getSource()))) {
+                                CACHE.put(key(dataSource, tableNames[i]), tableStats, ttl * 1000);
+                            }
+                            synchronized (stats) {
+                                stats[i] = tableStats;
+                            }
+                        } catch (SQLException e) {
+                            synchronized (stats) {
+                                errors[i] = String.valueOf(e.getMessage());
+                            }
+                        }
+                    }
+                } finally {
+                    conn.close();
+                }
+                return null;
+            })));
+        }
+
+        /* Wait for every lane, tables left behind are reported */
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        String failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                future.cancel(true);
+                failure = String.valueOf(e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+            }
+        }
+        synchronized (stats) {
+            for (int i = 0; i < tableNames.length; i++) {
+                if (stats[i] == null && errors[i] == null) {
+                    errors[i] = failure == null ? "Not read" : failure;
+                }
+            }
+        }
+    }
+
+    /* Drops cached stats of a data source, every entry when null */
+    public static final long invalidate(String dataSource) {
+        return dataSource == null ? CACHE.invalidateAll() : CACHE.invalidatePrefix(dataSource + "\u0000");
+    }
+
+    private static final String key(String dataSource, String tableName) {
+        return dataSource + "\u0000" + tableName;
+    }
+}
@@ -0,0 +1,121 @@
+package omni.toolkit;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class OTTtlCache<V> {
+    /* Entry with expiration */
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /* Bounded map in access order, eldest entry is evicted first */
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry<V>> map;
+
+    /* Stats */
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public OTTtlCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.map = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                if (size() > OTTtlCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /* Returns the value if present and not expired, null otherwise */
+    public synchronized V get(String key) {
+        Entry<V> entry = this.map.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expiresAt > 0 && entry.expiresAt < System.currentTimeMillis()) {
+            this.map.remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /* Stores the value, a ttl <= 0 never expires */
+    public synchronized void put(String key, V value, long ttlMillis) {
+        this.map.put(key, new Entry<>(value, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0));
+    }
+
+    /* Removes a single key */
+    public synchronized boolean invalidate(String key) {
+        return this.map.remove(key) != null;
+    }
+
+    /* Removes all keys starting with prefix */
+    public synchronized long invalidatePrefix(String prefix) {
+        long removed = 0;
+        Iterator<String> it = this.map.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /* Removes everything */
+    public synchronized long invalidateAll() {
+        long removed = this.map.size();
+        this.map.clear();
+        return removed;
+    }
+
+    /* Copy of the entries that have not expired */
+    public synchronized Map<String, V> entries() {
+        Map<String, V> result = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Entry<V>> e : this.map.entrySet()) {
+            if (e.getValue().expiresAt <= 0 || e.getValue().expiresAt >= now) {
+                result.put(e.getKey(), e.getValue().value);
+            }
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return this.map.size();
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+}
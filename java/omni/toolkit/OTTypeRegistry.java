@@ -0,0 +1,182 @@
+package omni.toolkit;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class OTTypeRegistry {
+    /* Dialects, keyed by DatabaseMetaData.getDatabaseProductName */
+    public static final String ANY = "";
+    public static final String SQLSERVER = "sqlserver";
+    public static final String ORACLE = "oracle";
+    public static final String POSTGRESQL = "postgresql";
+    public static final String MYSQL = "mysql";
+    public static final String MARIADB = "mariadb";
+    public static final String DB2 = "db2";
+
+    /* Xml types */
+    public static final Set<String> XML_TYPES = new HashSet<>(
+            Arrays.asList("boolean", "date", "time", "dateTime", "double", "int", "string"));
+
+    /* Type name to xml type */
+    private static final Map<String, String> NAME_TYPES = new HashMap<>();
+
+    /* java.sql.Types codes whose xml type does not depend on the type name */
+    private static final Map<Integer, String> SQL_TYPES = new HashMap<>();
+
+    /* Types with a length in the column definition */
+    private static final Set<String> SIZE_TYPES = new HashSet<>(
+            Arrays.asList("CHAR", "VARCHAR", "BINARY", "VARBINARY", "NVARCHAR"));
+
+    /* Per dialect overlays, ANY applies to every dialect, custom mappings end up here too */
+    private static final Map<String, Map<String, String>> DIALECT_TYPES = new ConcurrentHashMap<>();
+
+    /* Mappings registered at runtime as dialect, type name, xml type, kept for the snapshot file */
+    private static final Map<String, String[]> CUSTOM_TYPES = new ConcurrentHashMap<>();
+
+    static {
+        /* Names */
+        registerNames("boolean", "BIT", "BOOL", "BOOLEAN");
+        registerNames("date", "DATE");
+        registerNames("time", "TIME", "TIMETZ");
+        registerNames("dateTime", "DATETIME", "DATETIME2", "SMALLDATETIME", "TIMESTAMP", "TIMESTAMPTZ");
+        registerNames("double", "BIGINT", "BIGINT IDENTITY", "DECIMAL", "DECIMAL IDENTITY", "DOUBLE",
+                "DOUBLE PRECISION", "FLOAT", "FLOAT4", "FLOAT8", "MONEY", "NUMERIC", "NUMERIC IDENTITY", "REAL",
+                "SMALLINT UNSIGNED", "SMALLMONEY", "TINYINT", "TINYINT UNSIGNED");
+        registerNames("int", "BIGINT UNSIGNED", "INT", "INT IDENTITY", "INT UNSIGNED", "INT2", "INT4", "INT8",
+                "INTEGER", "INTEGER UNSIGNED", "MEDIUMINT", "MEDIUMINT UNSIGNED", "NUMBER", "SERIAL2", "SERIAL4",
+                "SERIAL8", "SMALLINT", "SMALLINT IDENTITY", "TINYINT IDENTITY");
+
+        /* Codes, ambiguous ones (BIT, TINYINT, SMALLINT, BIGINT, DECIMAL, NUMERIC) are resolved by name */
+        SQL_TYPES.put(Types.BOOLEAN, "boolean");
+        SQL_TYPES.put(Types.DATE, "date");
+        SQL_TYPES.put(Types.TIME, "time");
+        SQL_TYPES.put(Types.TIME_WITH_TIMEZONE, "time");
+        SQL_TYPES.put(Types.TIMESTAMP, "dateTime");
+        SQL_TYPES.put(Types.TIMESTAMP_WITH_TIMEZONE, "dateTime");
+        SQL_TYPES.put(Types.INTEGER, "int");
+        SQL_TYPES.put(Types.DOUBLE, "double");
+        SQL_TYPES.put(Types.FLOAT, "double");
+        SQL_TYPES.put(Types.REAL, "double");
+        for (int sqlType : new int[] { Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR,
+                Types.LONGNVARCHAR, Types.CLOB, Types.NCLOB }) {
+            SQL_TYPES.put(sqlType, "string");
+        }
+
+        /* Dialects */
+        register(SQLSERVER, "DATETIMEOFFSET", "dateTime");
+        register(SQLSERVER, "UNIQUEIDENTIFIER", "string");
+        register(ORACLE, "DATE", "dateTime");
+        register(ORACLE, "BINARY_FLOAT", "double");
+        register(ORACLE, "BINARY_DOUBLE", "double");
+        register(POSTGRESQL, "BIGSERIAL", "int");
+        register(POSTGRESQL, "SMALLSERIAL", "int");
+        register(POSTGRESQL, "SERIAL", "int");
+        register(POSTGRESQL, "TIMESTAMP WITH TIME ZONE", "dateTime");
+        register(POSTGRESQL, "TIME WITH TIME ZONE", "time");
+        for (String dialect : new String[] { MYSQL, MARIADB }) {
+            register(dialect, "SMALLINT UNSIGNED", "double");
+            register(dialect, "YEAR", "int");
+        }
+        register(DB2, "DECFLOAT", "double");
+    }
+
+    private static final void registerNames(String xmlType, String... typeNames) {
+        for (String typeName : typeNames) {
+            NAME_TYPES.put(typeName, xmlType);
+        }
+    }
+
+    /* Dialect of a product name */
+    public static final String getDialect(String productName) {
+        if (productName == null) {
+            return ANY;
+        }
+        String name = productName.toLowerCase();
+        if (name.contains("sql server")) {
+            return SQLSERVER;
+        } else if (name.startsWith("oracle")) {
+            return ORACLE;
+        } else if (name.startsWith("postgres")) {
+            return POSTGRESQL;
+        } else if (name.startsWith("mariadb")) {
+            return MARIADB;
+        } else if (name.startsWith("mysql")) {
+            return MYSQL;
+        } else if (name.startsWith("db2")) {
+            return DB2;
+        }
+        return name;
+    }
+
+    /* Dialect of an open connection */
+    public static final String getDialect(Connection conn) throws SQLException {
+        return getDialect(conn.getMetaData().getDatabaseProductName());
+    }
+
+    /* Register a custom mapping, a null dialect applies to every data source */
+    public static final void register(String dialect, String typeName, String xmlType) {
+        if (!XML_TYPES.contains(xmlType)) {
+            throw new IllegalArgumentException("Unknown xml type " + xmlType);
+        }
+        DIALECT_TYPES.computeIfAbsent(dialect == null ? ANY : dialect, k -> new ConcurrentHashMap<>())
+                .put(typeName.toUpperCase(), xmlType);
+    }
+
+    /* Register a mapping at runtime, it is persisted with the snapshot file */
+    public static final void registerCustom(String dialect, String typeName, String xmlType) {
+        register(dialect, typeName, xmlType);
+        String key = (dialect == null ? ANY : dialect) + "\u0000" + typeName.toUpperCase();
+        CUSTOM_TYPES.put(key, new String[] { dialect == null ? ANY : dialect, typeName.toUpperCase(), xmlType });
+        OTSnapshotStore.markDirty();
+    }
+
+    /* Mappings registered at runtime */
+    public static final List<String[]> getCustomMappings() {
+        return new ArrayList<>(CUSTOM_TYPES.values());
+    }
+
+    /* Returns the xml type: dialect overlay, then sql type code, then type name, string by default */
+    public static final String getXmlDataType(String dialect, int sqlType, String typeName) {
+        String typeNameUpper = typeName == null ? "" : typeName.toUpperCase();
+        OTSnapshotStore.load();
+
+        /* Overlays */
+        Map<String, String> overlay = dialect == null ? null : DIALECT_TYPES.get(dialect);
+        String xmlType = overlay == null ? null : overlay.get(typeNameUpper);
+        if (xmlType == null && (overlay = DIALECT_TYPES.get(ANY)) != null) {
+            xmlType = overlay.get(typeNameUpper);
+        }
+
+        /* Code */
+        if (xmlType == null) {
+            xmlType = SQL_TYPES.get(sqlType);
+        }
+
+        /* Name */
+        if (xmlType == null) {
+            xmlType = NAME_TYPES.get(typeNameUpper);
+        }
+
+        /* By default return string */
+        return xmlType == null ? "string" : xmlType;
+    }
+
+    /* Returns the xml type from the type name only */
+    public static final String getXmlDataType(String typeName) {
+        return getXmlDataType(null, Types.OTHER, typeName);
+    }
+
+    /* Whether the column definition carries a length */
+    public static final boolean isSizeType(String typeName) {
+        return SIZE_TYPES.contains(typeName.toUpperCase());
+    }
+}
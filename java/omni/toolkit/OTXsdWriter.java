@@ -0,0 +1,345 @@
+package omni.toolkit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * Streaming xsd writer. The output is byte-identical to the former DOM + Transformer
+ * serialization (indent 4, no xml declaration): attributes must be written in the order
+ * the transformer used, namespace declarations first and the others alphabetically.
+ */
+public class OTXsdWriter {
+    /* Indentation */
+    private static final String INDENT = "    ";
+
+    /* Element of a related type */
+    public static final class Nested {
+        private final String name;
+        private final String type;
+        private final String appInfo;
+        private final boolean many;
+
+        public Nested(String name, String type, String appInfo, boolean many) {
+            this.name = name;
+            this.type = type;
+            this.appInfo = appInfo;
+            this.many = many;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        /* Same element under another name */
+        public Nested withName(String name) {
+            return new Nested(name, this.type, this.appInfo, this.many);
+        }
+    }
+
+    /* Output */
+    private final Writer out;
+
+    /* Open elements and their state */
+    private final Deque<String> elements = new ArrayDeque<>();
+    private boolean startTagOpen = false;
+    private boolean hasChildElements = false;
+    private final Deque<Boolean> childElementsStack = new ArrayDeque<>();
+
+    public OTXsdWriter(Writer out) {
+        this.out = out;
+    }
+
+    /* Writer producing utf-8 bytes */
+    public static final OTXsdWriter forStream(OutputStream stream) {
+        return new OTXsdWriter(new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8)));
+    }
+
+    /* Schema root, left open until endSchema */
+    public void startSchema(String targetNamespace) throws IOException {
+        startElement("xsd:schema");
+        if (targetNamespace != null && !targetNamespace.isEmpty()) {
+            /* An empty prefix declaration is not serialized */
+            attribute("xmlns:tns", targetNamespace);
+        }
+        attribute("xmlns:xsd", "http://www.w3.org/2001/XMLSchema");
+        attribute("targetNamespace", targetNamespace);
+    }
+
+    /* Complex type of a table */
+    public void writeComplexType(String dialect, String tableName, String name, String description,
+            List<OTColumn> columns) throws IOException {
+        writeComplexType(dialect, tableName, name, description, columns, null, Collections.emptySet(),
+                Collections.emptyList());
+    }
+
+    /* Complex type of a table with its keys, @Id falls back to the "id" naming convention when keys is null */
+    public void writeComplexType(String dialect, String tableName, String name, String description,
+            List<OTColumn> columns, OTTableKeys keys) throws IOException {
+        writeComplexType(dialect, tableName, name, description, columns, keys, Collections.emptySet(),
+                Collections.emptyList());
+    }
+
+    /* Complex type of a table with elements of related types, the skipped columns are mapped by the relations */
+    public void writeComplexType(String dialect, String tableName, String name, String description,
+            List<OTColumn> columns, OTTableKeys keys, Set<String> skipColumns, List<Nested> nested)
+            throws IOException {
+        /* Name */
+        startElement("xsd:complexType");
+        attribute("name", name);
+
+        /* Annotation */
+        startElement("xsd:annotation");
+
+        /* AppInfo */
+        startElement("xsd:appinfo");
+        attribute("source", "appian.jpa");
+        text("@Table(name=\"" + tableName + "\")");
+        endElement();
+
+        /* Description */
+        startElement("xsd:documentation");
+        cdata(description);
+        endElement();
+        endElement();
+
+        /* Sequence to hold fields */
+        startElement("xsd:sequence");
+
+        /* Iterate over columns */
+        for (OTColumn column : columns) {
+            String columnName = column.getName();
+            String dataType = column.getTypeName();
+            if (skipColumns.contains(columnName)) {
+                continue;
+            }
+
+            /* Column element */
+            startElement("xsd:element");
+            attribute("name", OTHelper.toCamelCase(columnName));
+            attribute("nillable", "true");
+            attribute("type", "xsd:" + OTHelper.getXmlDataType(dialect, column.getDataType(), dataType));
+
+            /* Column annotation */
+            startElement("xsd:annotation");
+
+            /* Column appInfo */
+            startElement("xsd:appinfo");
+            attribute("source", "appian.jpa");
+            /* A composite key has no single @Id, none is marked rather than several */
+            boolean isId = keys == null ? columnName.toLowerCase().equals("id")
+                    : keys.isId(columnName) && keys.getPrimaryKey().size() <= 1;
+            text(OTHelper.generateAppInfoText(
+                    columnName,
+                    dataType,
+                    isId,
+                    keys == null ? isId : keys.isUnique(columnName),
+                    column.isAutoGenerated(),
+                    column.isNullable(),
+                    column.getSize()));
+            endElement();
+            endElement();
+            endElement();
+        }
+
+        /* Related types */
+        for (Nested element : nested) {
+            startElement("xsd:element");
+            if (element.many) {
+                attribute("maxOccurs", "unbounded");
+                attribute("minOccurs", "0");
+            }
+            attribute("name", element.name);
+            attribute("nillable", "true");
+            attribute("type", "tns:" + element.type);
+            startElement("xsd:annotation");
+            startElement("xsd:appinfo");
+            attribute("source", "appian.jpa");
+            text(element.appInfo);
+            endElement();
+            endElement();
+            endElement();
+        }
+        endElement();
+        endElement();
+    }
+
+    /* Close the schema root and flush */
+    public void endSchema() throws IOException {
+        endElement();
+        this.out.write('\n');
+        this.out.flush();
+    }
+
+    /* Generic element start, attributes may follow */
+    public void startElement(String name) throws IOException {
+        closeStartTag();
+        if (!this.elements.isEmpty()) {
+            this.hasChildElements = true;
+            this.out.write('\n');
+            indent(this.elements.size());
+        }
+        this.childElementsStack.push(this.hasChildElements);
+        this.hasChildElements = false;
+        this.out.write('<');
+        this.out.write(name);
+        this.elements.push(name);
+        this.startTagOpen = true;
+    }
+
+    /* Attribute of the element just started */
+    public void attribute(String name, String value) throws IOException {
+        this.out.write(' ');
+        this.out.write(name);
+        this.out.write("=\"");
+        escape(value, true);
+        this.out.write('"');
+    }
+
+    /* Escaped text content */
+    public void text(String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        closeStartTag();
+        escape(value, false);
+    }
+
+    /* CDATA content, same state machine as the transformer: empty sections are dropped, line feeds and
+     * surrogate pairs are written as they are, control characters close the section */
+    public void cdata(String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        closeStartTag();
+        boolean open = false;
+        if (isCdataSafe(value.charAt(0))) {
+            this.out.write("<![CDATA[");
+            open = true;
+        }
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            if (c == '\n') {
+                this.out.write(c);
+            } else if (!isCdataSafe(c)) {
+                if (Character.isSurrogate(c)) {
+                    int len = Character.charCount(value.codePointAt(i));
+                    this.out.write(value, i, len);
+                    i += len - 1;
+                } else {
+                    if (open) {
+                        this.out.write("]]>");
+                        open = false;
+                    }
+                    charRef(c);
+                }
+            } else if (c == ']' && i < value.length() - 2 && value.startsWith("]]>", i)) {
+                /* Split the terminator across two sections */
+                this.out.write("]]]]><![CDATA[>");
+                i += 2;
+            } else {
+                if (!open) {
+                    this.out.write("<![CDATA[");
+                    open = true;
+                }
+                this.out.write(c);
+            }
+            i++;
+        }
+        if (open) {
+            this.out.write("]]>");
+        }
+    }
+
+    private static boolean isCdataSafe(char c) {
+        return c < 0x7F ? (c >= 0x20 || c == '\n' || c == '\r' || c == '\t') : !Character.isSurrogate(c);
+    }
+
+    /* Element end, self closing when empty */
+    public void endElement() throws IOException {
+        String name = this.elements.pop();
+        if (this.startTagOpen) {
+            this.out.write("/>");
+            this.startTagOpen = false;
+        } else {
+            if (this.hasChildElements) {
+                this.out.write('\n');
+                indent(this.elements.size());
+            }
+            this.out.write("</");
+            this.out.write(name);
+            this.out.write('>');
+        }
+        this.hasChildElements = this.childElementsStack.pop();
+    }
+
+    private void closeStartTag() throws IOException {
+        if (this.startTagOpen) {
+            this.out.write('>');
+            this.startTagOpen = false;
+        }
+    }
+
+    private void indent(int depth) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            this.out.write(INDENT);
+        }
+    }
+
+    private void charRef(int cp) throws IOException {
+        this.out.write("&#");
+        this.out.write(Integer.toString(cp));
+        this.out.write(';');
+    }
+
+    /* Escaping rules of the transformer for attributes and text */
+    private void escape(String value, boolean isAttribute) throws IOException {
+        int start = 0;
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            String replacement = null;
+            int cp = -1;
+            int len = 1;
+            if (c == '<') {
+                replacement = "&lt;";
+            } else if (c == '>') {
+                replacement = "&gt;";
+            } else if (c == '&') {
+                replacement = "&amp;";
+            } else if (c == '"' && isAttribute) {
+                replacement = "&quot;";
+            } else if (c == '\n' || c == '\t') {
+                cp = isAttribute ? c : -1;
+            } else if (c < 0x20) {
+                cp = c;
+            } else if (c >= 0x7F && c <= 0x9F) {
+                cp = isAttribute ? -1 : c;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                cp = value.codePointAt(i);
+                len = 2;
+            }
+            if (replacement != null || cp != -1) {
+                this.out.write(value, start, i - start);
+                if (replacement != null) {
+                    this.out.write(replacement);
+                } else {
+                    charRef(cp);
+                }
+                start = i + len;
+            }
+            i += len;
+        }
+        this.out.write(value, start, value.length() - start);
+    }
+}
@@ -1,5 +1,13 @@
 package omni.toolkit.functions;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.appiancorp.services.ServiceContext;
 import com.appiancorp.suiteapi.applications.Application;
 import com.appiancorp.suiteapi.applications.ApplicationService;
 import com.appiancorp.suiteapi.applications.ApplicationsFolder;
@@ -8,10 +16,10 @@ import com.appiancorp.suiteapi.content.Content;
 import com.appiancorp.suiteapi.content.ContentConstants;
 import com.appiancorp.suiteapi.content.ContentFilter;
 import com.appiancorp.suiteapi.content.ContentService;
-import com.appiancorp.suiteapi.content.ContentUploadOutputStream;
 import com.appiancorp.suiteapi.expression.annotations.Function;
 import com.appiancorp.suiteapi.expression.annotations.Parameter;
 import com.appiancorp.suiteapi.knowledge.Document;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
 import com.appiancorp.suiteapi.knowledge.FolderDataType;
 import com.appiancorp.suiteapi.knowledge.KnowledgeFolder;
 import com.appiancorp.suiteapi.process.ApplicationDataType;
@@ -25,6 +33,12 @@ import com.appiancorp.suiteapi.type.TypeService;
 import com.appiancorp.suiteapi.type.TypedValue;
 import com.appiancorp.type.AppianTypeLong;
 
+import omni.toolkit.OTContentIndex;
+import omni.toolkit.OTContentSearch;
+import omni.toolkit.OTContentUuids;
+import omni.toolkit.OTDesignObjects;
+import omni.toolkit.OTDocumentReader;
+import omni.toolkit.OTDocumentWriter;
 import omni.toolkit.OTHelper;
 
 @OTCategory
@@ -53,7 +67,9 @@ public class OTContent {
     public Long[] otGetContentIdByNameRecursive(
             ContentService cs,
             @Parameter @Name("name") String name,
-            @Parameter(required = false) @Name("folderId") Long folderId) {
+            @Parameter(required = false) @Name("folderId") Long folderId,
+            @Parameter(required = false) @Name("maxDepth") Long maxDepth,
+            @Parameter(required = false) @Name("findAll") Boolean findAll) {
 
         try {
             /* Return if name is null */
@@ -61,19 +77,121 @@ public class OTContent {
                 return null;
             }
 
-            /* Init content filter */
-            ContentFilter contentFilter = new ContentFilter(ContentConstants.TYPE_ALL);
-            contentFilter.setName(name);
+            /* Breadth-first search, null when not found */
+            Long[] ids = searchContentByName(cs, name, folderId, maxDepth, findAll).getIds();
+            return ids.length == 0 ? null : ids;
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        }
+    }
 
-            /* Return recursion result */
-            return OTHelper.walkSubfoldersToFindContent(cs, contentFilter,
-                    folderId == null ? cs.getIdByUuid(ContentConstants.UUID_RULES_ROOT_FOLDER) : folderId);
+    @Function
+    public TypedValue otSearchContentByName(
+            ContentService cs,
+            @Parameter @Name("name") String name,
+            @Parameter(required = false) @Name("folderId") Long folderId,
+            @Parameter(required = false) @Name("maxDepth") Long maxDepth,
+            @Parameter(required = false) @Name("findAll") Boolean findAll) {
+
+        try {
+            /* Return if name is null */
+            if (name == null || name.isEmpty()) {
+                return null;
+            }
+
+            /* Ids along with folders visited, service calls, depth and elapsed time */
+            OTContentSearch search = searchContentByName(cs, name, folderId, maxDepth, findAll);
+            Map<TypedValue, TypedValue> result = search.createStatsMap();
+            result.put(OTHelper.stringTypedValue("ids"), new TypedValue((long) AppianType.LIST_OF_INTEGER,
+                    search.getIds()));
+            return new TypedValue((long) AppianType.MAP, result);
         } catch (Exception e) {
             OTHelper.logError(e.getMessage());
             return null;
         }
     }
 
+    @Function
+    public Long[] otLookupContentIdByName(
+            ServiceContext sc,
+            ContentService cs,
+            @Parameter @Name("name") String name,
+            @Parameter(required = false) @Name("prefix") Boolean prefix,
+            @Parameter(required = false) @Name("maxResults") Long maxResults,
+            @Parameter(required = false) @Name("rootFolderIds") Long[] rootFolderIds,
+            @Parameter(required = false) @Name("refreshInterval") Long refreshInterval) {
+
+        try {
+            /* Return if name is null */
+            if (name == null || name.isEmpty()) {
+                return null;
+            }
+
+            /* Exact or prefix lookup on the index of the user, below the rules root folder unless rootFolderIds
+             * lists other folders: knowledge and application folders are only indexed when passed in */
+            String username = sc.getIdentity().getIdentity();
+            Long[] roots = indexRoots(cs, rootFolderIds);
+            OTContentIndex index = OTContentIndex.get(username, roots, refreshInterval);
+            boolean isPrefix = prefix != null && prefix;
+
+            /* Without a fresh index, exact names are searched with an early exit and prefixes rebuild it */
+            if (index == null && !isPrefix) {
+                List<Long> ids = new ArrayList<>();
+                for (Long root : roots) {
+                    ids.addAll(Arrays.asList(searchContentByName(cs, name, root, null, false).getIds()));
+                }
+                return ids.toArray(new Long[0]);
+            }
+            if (index == null) {
+                index = OTContentIndex.refresh(cs, username, roots);
+            }
+            long[] ids = isPrefix
+                    ? index.lookupPrefix(name, maxResults == null ? Integer.MAX_VALUE
+                            : (int) Math.min(maxResults, Integer.MAX_VALUE))
+                    : index.lookup(name);
+            return Arrays.stream(ids).boxed().toArray(Long[]::new);
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        }
+    }
+
+    @Function
+    public TypedValue otRefreshContentIndex(
+            ServiceContext sc,
+            ContentService cs,
+            @Parameter(required = false) @Name("rootFolderIds") Long[] rootFolderIds) {
+
+        try {
+            /* Rebuild now, returns size and build stats */
+            OTContentIndex index = OTContentIndex.refresh(cs, sc.getIdentity().getIdentity(),
+                    indexRoots(cs, rootFolderIds));
+            return new TypedValue((long) AppianType.MAP, index.createStatsMap());
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        }
+    }
+
+    /* Roots of the index, only the rules root folder by default */
+    private static final Long[] indexRoots(ContentService cs, Long[] rootFolderIds) throws Exception {
+        return rootFolderIds == null || rootFolderIds.length == 0
+                ? new Long[] { cs.getIdByUuid(ContentConstants.UUID_RULES_ROOT_FOLDER) }
+                : rootFolderIds;
+    }
+
+    /* Search below folderId, the rules root folder by default */
+    private static final OTContentSearch searchContentByName(ContentService cs, String name, Long folderId,
+            Long maxDepth, Boolean findAll) throws Exception {
+        ContentFilter contentFilter = new ContentFilter(ContentConstants.TYPE_ALL);
+        contentFilter.setName(name);
+        return OTContentSearch.search(cs, contentFilter,
+                folderId == null ? cs.getIdByUuid(ContentConstants.UUID_RULES_ROOT_FOLDER) : folderId,
+                maxDepth == null || maxDepth < 0 ? OTContentSearch.DEFAULT_MAX_DEPTH : maxDepth.intValue(),
+                findAll != null && findAll);
+    }
+
     @Function
     public TypedValue otGetContentDetailsById(
             ContentService cs,
@@ -82,6 +200,7 @@ public class OTContent {
         try {
             /* Retrieve last verion of content */
             Content content = cs.getVersion(contentId, ContentConstants.VERSION_CURRENT);
+            OTContentUuids.put(content);
 
             /* Return list of dictionaries */
             return new TypedValue((long) AppianType.MAP, OTHelper.createContentAttributesMap(cs, content));
@@ -91,17 +210,57 @@ public class OTContent {
         }
     }
 
+    @Function
+    public TypedValue otGetContentDetailsByIds(
+            ContentService cs,
+            @Parameter @Name("contentIds") Long[] contentIds,
+            @Parameter(required = false) @Name("fields") String[] fields) {
+
+        /* Early exit */
+        if (contentIds == null) {
+            return null;
+        }
+
+        /* Every attribute by default */
+        String[] attributes = fields == null || fields.length == 0 ? OTHelper.CONTENT_FIELDS : fields;
+
+        /* One lookup per distinct id */
+        Map<Long, Map<Object, Object>> details = new HashMap<>();
+        for (Long contentId : contentIds) {
+            if (contentId == null || details.containsKey(contentId)) {
+                continue;
+            }
+            Map<Object, Object> map;
+            try {
+                Content content = cs.getVersion(contentId, ContentConstants.VERSION_CURRENT);
+                OTContentUuids.put(content);
+                map = OTHelper.createContentAttributesMap(cs, content, attributes);
+            } catch (Exception e) {
+                map = new LinkedHashMap<>();
+                map.put(OTHelper.stringTypedValue("id"), OTHelper.intTypedValue(contentId));
+                map.put(OTHelper.stringTypedValue("error"), OTHelper.stringTypedValue(String.valueOf(e.getMessage())));
+            }
+            details.put(contentId, map);
+        }
+
+        /* Results in input order, duplicates share their map */
+        Map<?, ?>[] result = new Map[contentIds.length];
+        for (int i = 0; i < contentIds.length; i++) {
+            result[i] = contentIds[i] == null ? new LinkedHashMap<>() : details.get(contentIds[i]);
+        }
+
+        /* Return list of dictionaries */
+        return new TypedValue((long) AppianType.LIST_OF_MAP, result);
+    }
+
     @Function
     public TypedValue otGetContentDetailsByUuid(
             ContentService cs,
             @Parameter @Name("uuid") String uuid) {
 
         try {
-            /* Content id from uuid */
-            Long contentId = cs.getIdByUuid(uuid);
-
-            /* Retrieve last verion of content */
-            Content content = cs.getVersion(contentId, ContentConstants.VERSION_CURRENT);
+            /* Retrieve last verion of content, through the cached id of the uuid */
+            Content content = OTContentUuids.getContent(cs, uuid);
 
             /* Return list of dictionaries */
             return new TypedValue((long) AppianType.MAP, OTHelper.createContentAttributesMap(cs, content));
@@ -111,6 +270,68 @@ public class OTContent {
         }
     }
 
+    @Function
+    public TypedValue otReadDocument(
+            ContentService cs,
+            @Parameter @Name("documentId") @DocumentDataType Long documentId,
+            @Parameter(required = false) @Name("offset") Long offset,
+            @Parameter(required = false) @Name("length") Long length,
+            @Parameter(required = false) @Name("charset") String charset) {
+
+        try {
+            /* Byte range of the document file */
+            OTDocumentReader.Range range = OTDocumentReader.readRange(cs.getInternalFilename(documentId),
+                    offset == null ? 0 : offset,
+                    length == null ? OTDocumentReader.DEFAULT_LENGTH
+                            : (int) Math.min(length, OTDocumentReader.MAX_LENGTH),
+                    charset);
+
+            /* Return dictionary */
+            Map<TypedValue, TypedValue> result = new LinkedHashMap<>();
+            result.put(OTHelper.stringTypedValue("content"), OTHelper.stringTypedValue(range.getContent()));
+            result.put(OTHelper.stringTypedValue("offset"), OTHelper.intTypedValue(range.getOffset()));
+            result.put(OTHelper.stringTypedValue("length"), OTHelper.intTypedValue((long) range.getLength()));
+            result.put(OTHelper.stringTypedValue("nextOffset"),
+                    OTHelper.intTypedValue(range.getOffset() + range.getLength()));
+            result.put(OTHelper.stringTypedValue("size"), OTHelper.intTypedValue(range.getSize()));
+            result.put(OTHelper.stringTypedValue("eof"), OTHelper.booleanTypedValue(range.isEof()));
+            return new TypedValue((long) AppianType.MAP, result);
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        }
+    }
+
+    @Function
+    public TypedValue otReadDocumentLines(
+            ContentService cs,
+            @Parameter @Name("documentId") @DocumentDataType Long documentId,
+            @Parameter(required = false) @Name("startLine") Long startLine,
+            @Parameter(required = false) @Name("maxLines") Long maxLines,
+            @Parameter(required = false) @Name("charset") String charset) {
+
+        try {
+            /* Lines of the document file, the first line being 1 */
+            OTDocumentReader.Lines lines = OTDocumentReader.readLines(cs.getInternalFilename(documentId),
+                    startLine == null ? 1 : startLine,
+                    maxLines == null ? OTDocumentReader.DEFAULT_MAX_LINES
+                            : (int) Math.min(maxLines, OTDocumentReader.MAX_LINES),
+                    charset);
+
+            /* Return dictionary */
+            Map<TypedValue, TypedValue> result = new LinkedHashMap<>();
+            result.put(OTHelper.stringTypedValue("lines"), new TypedValue((long) AppianType.LIST_OF_STRING,
+                    lines.getLines().toArray(new String[0])));
+            result.put(OTHelper.stringTypedValue("startLine"), OTHelper.intTypedValue(lines.getStartLine()));
+            result.put(OTHelper.stringTypedValue("nextLine"), OTHelper.intTypedValue(lines.getNextLine()));
+            result.put(OTHelper.stringTypedValue("eof"), OTHelper.booleanTypedValue(lines.isEof()));
+            return new TypedValue((long) AppianType.MAP, result);
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        }
+    }
+
     @Function
     public Long otCreateConstant(
             ContentService cs,
@@ -136,6 +357,7 @@ public class OTContent {
             cons.setSecurity(ContentConstants.SEC_INH_ALL);
 
             Long constantId = cs.create(cons, ContentConstants.UNIQUE_FOR_ALL);
+            OTContentUuids.put(constantId, cons.getUuid());
             /* Add to application and return constantId */
             OTHelper.addContentToApplication(cs, as, constantId, application);
             return constantId;
@@ -154,7 +376,11 @@ public class OTContent {
             @Parameter @Name("extension") String extension,
             @Parameter @Name("description") String description,
             @Parameter @Name("folder") @FolderDataType Long folder,
-            @Parameter(required = false) @Name("application") @ApplicationDataType Long application) {
+            @Parameter(required = false) @Name("application") @ApplicationDataType Long application,
+            @Parameter(required = false) @Name("charset") String charset,
+            @Parameter(required = false) @Name("lines") String[] lines,
+            @Parameter(required = false) @Name("base64Chunks") String[] base64Chunks,
+            @Parameter(required = false) @Name("sourceDocumentId") @DocumentDataType Long sourceDocumentId) {
 
         /* Early exit */
         if (name == null || extension == null || folder == null) {
@@ -167,18 +393,12 @@ public class OTContent {
             doc.setDescription(description);
             doc.setSecurity(ContentConstants.SEC_INH_ALL);
 
-            /* Upload to Appian and write content */
-            ContentUploadOutputStream outStr = cs.uploadDocument(doc, ContentConstants.UNIQUE_FOR_ALL);
-            byte[] fileContentBytes = content.getBytes();
-            try {
-                outStr.write(fileContentBytes);
-                outStr.flush();
-            } finally {
-                outStr.close();
-            }
+            /* Upload to Appian, streaming content, lines, base64 chunks or a copy of the source document */
+            Long documentId = OTDocumentWriter.upload(cs, doc, content, lines, base64Chunks, sourceDocumentId,
+                    charset);
+            OTContentUuids.put(documentId, doc.getUuid());
 
             /* Add to application and return documentId */
-            Long documentId = outStr.getContentId();
             OTHelper.addContentToApplication(cs, as, documentId, application);
             return documentId;
         } catch (Exception e) {
@@ -207,6 +427,7 @@ public class OTContent {
 
             /* Add to applicatoin and return folderId */
             Long newFolderId = cs.create(newFolder, ContentConstants.UNIQUE_FOR_ALL);
+            OTContentUuids.put(newFolderId, newFolder.getUuid());
             OTHelper.addContentToApplication(cs, as, newFolderId, application);
             return newFolderId;
         } catch (Exception e) {
@@ -235,6 +456,7 @@ public class OTContent {
 
             /* Add to application and return folderId */
             Long newApplicationId = cs.create(newApplication, ContentConstants.UNIQUE_FOR_ALL);
+            OTContentUuids.put(newApplicationId, newApplication.getUuid());
             OTHelper.addContentToApplication(cs, as, newApplicationId, application);
             return newApplicationId;
         } catch (Exception e) {
@@ -262,6 +484,7 @@ public class OTContent {
             newKcFolder.setSecurity(ContentConstants.SEC_INH_ALL);
 
             Long newKcFolderId = cs.create(newKcFolder, ContentConstants.UNIQUE_FOR_ALL);
+            OTContentUuids.put(newKcFolderId, newKcFolder.getUuid());
             /* Add to application and return folderId */
             OTHelper.addContentToApplication(cs, as, newKcFolderId, application);
             return newKcFolderId;
@@ -324,6 +547,7 @@ public class OTContent {
             freeFormRule.setSubtype(ContentConstants.SUBTYPE_RULE_FREEFORM);
 
             Long ruleExressionId = cs.create(freeFormRule, ContentConstants.UNIQUE_FOR_ALL);
+            OTContentUuids.put(ruleExressionId, freeFormRule.getUuid());
             /* Add to application and return contentId */
             OTHelper.addContentToApplication(cs, as, ruleExressionId, application);
             return ruleExressionId;
@@ -353,6 +577,7 @@ public class OTContent {
             freeFormRule.setSubtype(ContentConstants.SUBTYPE_RULE_INTERFACE);
 
             Long interfaceId = cs.create(freeFormRule, ContentConstants.UNIQUE_FOR_ALL);
+            OTContentUuids.put(interfaceId, freeFormRule.getUuid());
             /* Add to application and return contentId */
             OTHelper.addContentToApplication(cs, as, interfaceId, application);
             return interfaceId;
@@ -362,14 +587,53 @@ public class OTContent {
         }
     }
 
+    @Function
+    public TypedValue otGetContentUuidCacheStats() {
+
+        /* Hits, misses, evictions and size */
+        return new TypedValue((long) AppianType.MAP, OTContentUuids.createStatsMap());
+    }
+
+    @Function
+    public Long otInvalidateContentUuids(
+            @Parameter(required = false) @Name("uuid") String uuid) {
+
+        /* Number of dropped entries */
+        return OTContentUuids.invalidate(uuid);
+    }
+
+    @Function
+    public Long[] otCreateDesignObjects(
+            ContentService cs,
+            ApplicationService as,
+            TypeService ts,
+            @Parameter @Name("definitions") TypedValue definitions,
+            @Parameter(required = false) @Name("application") @ApplicationDataType Long application) {
+
+        try {
+            /* Create parents first, save each application once and return ids in input order */
+            OTDesignObjects created = OTDesignObjects.create(cs, as, ts, definitions, application);
+
+            /* On failure the ids created so far, null for the others */
+            if (created.getError() != null) {
+                OTHelper.logError(created.getError().getMessage());
+            }
+            return created.getIds();
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        }
+    }
+
     @Function
     public String otGetContentUuidById(
             ContentService cs,
             @Parameter @Name("contentId") Long contentId) {
 
         try {
-            /* Retrieve last verion of content */
+            /* Retrieve last verion of content, always with the rights of the caller */
             Content content = cs.getVersion(contentId, ContentConstants.VERSION_CURRENT);
+            OTContentUuids.put(content);
 
             /* Return content uuid */
             return content.getUuid();
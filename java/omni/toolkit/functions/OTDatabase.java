@@ -1,81 +1,427 @@
 package omni.toolkit.functions;
 
-import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.naming.Context;
+import javax.sql.DataSource;
 
 import com.appiancorp.services.ServiceContext;
+import com.appiancorp.suiteapi.applications.ApplicationService;
 import com.appiancorp.suiteapi.common.Name;
+import com.appiancorp.suiteapi.content.ContentConstants;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.ContentUploadOutputStream;
 import com.appiancorp.suiteapi.expression.annotations.*;
+import com.appiancorp.suiteapi.knowledge.Document;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
+import com.appiancorp.suiteapi.knowledge.FolderDataType;
+import com.appiancorp.suiteapi.process.ApplicationDataType;
 import com.appiancorp.suiteapi.type.AppianType;
+import com.appiancorp.suiteapi.type.TypeService;
 import com.appiancorp.suiteapi.type.TypedValue;
-import com.appiancorp.suiteapi.type.config.ImportResult;
-import com.appiancorp.suiteapi.type.config.xsd.XsdTypeImporter;
 
+import omni.toolkit.OTDataSourceCache;
+import omni.toolkit.OTDataTypeSync;
+import omni.toolkit.OTExecutor;
 import omni.toolkit.OTHelper;
+import omni.toolkit.OTKeyset;
+import omni.toolkit.OTMetadataCache;
+import omni.toolkit.OTQuery;
+import omni.toolkit.OTRelationGraph;
+import omni.toolkit.OTSchemaSnapshot;
+import omni.toolkit.OTSnapshotStore;
+import omni.toolkit.OTTableKeys;
+import omni.toolkit.OTTableMetadata;
+import omni.toolkit.OTTableStats;
+import omni.toolkit.OTTypeRegistry;
 
 @OTCategory
 public class OTDatabase {
 
+    /* Overall wait of otGetTablesMetadata */
+    private static final long TABLES_METADATA_TIMEOUT_SECONDS = 60;
+
+    /* Data source of the i-th table, a single data source applies to every table */
+    private String dataSourceOf(String[] dataSources, int i) {
+        return dataSources.length == 1 ? dataSources[0] : dataSources[i];
+    }
+
     @Function
     public TypedValue otGetTableMetadata(
             Context ctx,
             @Parameter @Name("dataSource") String dataSource,
-            @Parameter @Name("tableName") String tableName) {
-        
-        /* Vars */
-        Connection conn = null;
-        ResultSet rsColumns = null;
-        ArrayList<Map<Object, Object>> resultList = null;
-                
-        try {
-            /* Connection to db */
-            conn = OTHelper.getConnection(ctx, dataSource);
+            @Parameter @Name("tableName") String tableName,
+            @Parameter(required = false) @Name("cacheTtl") Long cacheTtl,
+            @Parameter(required = false) @Name("fields") String[] fields,
+            @Parameter(required = false) @Name("typed") Boolean typed) {
 
-            /* Get columns of the table */
-            rsColumns = OTHelper.getColumnsOfTable(conn, tableName);
+        try {
+            /* Metadata of the table, cached for cacheTtl seconds, restricted to fields */
+            OTTableMetadata metadata = OTMetadataCache.getTableMetadata(ctx, dataSource, tableName, cacheTtl,
+                    fields);
 
             /* Return early if empty */
-            if (rsColumns.next() == false) {
+            if (metadata.isEmpty()) {
                 return null;
             }
 
-            /* Metadata */
-            ResultSetMetaData rsmd = rsColumns.getMetaData();
+            /* Return list of dictionaries */
+            return new TypedValue((long) AppianType.LIST_OF_MAP,
+                    OTHelper.createTableMetadataMaps(metadata, typed != null && typed));
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        }
+    }
 
-            /* Result container */
-            resultList = new ArrayList<Map<Object, Object>>();
+    @Function
+    public TypedValue otGetTablesMetadata(
+            Context ctx,
+            @Parameter @Name("dataSources") String[] dataSources,
+            @Parameter @Name("tableNames") String[] tableNames,
+            @Parameter(required = false) @Name("cacheTtl") Long cacheTtl,
+            @Parameter(required = false) @Name("fields") String[] fields,
+            @Parameter(required = false) @Name("typed") Boolean typed,
+            @Parameter(required = false) @Name("maxConcurrency") Long maxConcurrency) {
 
-            /* Iterate over columns */
-            do {
-                Map<Object, Object> row = new LinkedHashMap<>();
+        /* One data source for every table, or one per table */
+        if (dataSources == null || tableNames == null || dataSources.length == 0
+                || (dataSources.length != 1 && dataSources.length != tableNames.length)) {
+            OTHelper.logError("dataSources must hold one entry or one entry per table");
+            return null;
+        }
+
+        /* Vars */
+        int lanes = maxConcurrency == null || maxConcurrency < 1 ? OTExecutor.MAX_DATA_SOURCE_CONCURRENCY
+                : (int) Math.min(maxConcurrency, OTExecutor.MAX_DATA_SOURCE_CONCURRENCY);
+        boolean isTyped = typed != null && typed;
+        AtomicReferenceArray<TypedValue> metadata = new AtomicReferenceArray<>(tableNames.length);
+        AtomicReferenceArray<String> errors = new AtomicReferenceArray<>(tableNames.length);
+
+        /* Resolve data sources in the calling thread and group entries by data source */
+        Map<String, DataSource> handles = new HashMap<>();
+        Map<String, ConcurrentLinkedQueue<Integer>> queues = new LinkedHashMap<>();
+        for (int i = 0; i < tableNames.length; i++) {
+            String dataSource = dataSourceOf(dataSources, i);
+            try {
+                if (!handles.containsKey(dataSource)) {
+                    handles.put(dataSource, OTHelper.getDataSource(ctx, dataSource));
+                }
+                queues.computeIfAbsent(dataSource, k -> new ConcurrentLinkedQueue<>()).add(i);
+            } catch (Exception e) {
+                errors.set(i, String.valueOf(e.getMessage()));
+            }
+        }
+
+        /* Fan out, at most lanes concurrent connections per data source */
+        AtomicIntegerArray done = new AtomicIntegerArray(tableNames.length);
+        List<Future<?>> futures = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentLinkedQueue<Integer>> entry : queues.entrySet()) {
+            String dataSource = entry.getKey();
+            DataSource handle = handles.get(dataSource);
+            ConcurrentLinkedQueue<Integer> queue = entry.getValue();
+            int count = Math.min(lanes, queue.size());
+            for (int lane = 0; lane < count; lane++) {
+                futures.add(OTExecutor.submit(() -> {
+                    Integer i;
+                    while ((i = queue.poll()) != null) {
+                        String tableName = tableNames[i];
+                        try {
+                            OTTableMetadata tableMetadata = OTExecutor.withPermit(dataSource,
+                                    () -> OTMetadataCache.getTableMetadata(handle, dataSource, tableName, cacheTtl,
+                                            fields));
+                            if (!tableMetadata.isEmpty()) {
+                                metadata.set(i, new TypedValue((long) AppianType.LIST_OF_MAP,
+                                        OTHelper.createTableMetadataMaps(tableMetadata, isTyped)));
+                            }
+                        } catch (Exception e) {
+                            errors.set(i, String.valueOf(e.getMessage()));
+                        } finally {
+                            done.set(i, 1);
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
 
-                /* Iterate over metadata fields */
-                for (int i = 1; i < rsmd.getColumnCount() + 1; i++) {
-                    row.put(OTHelper.stringTypedValue(rsmd.getColumnLabel(i)), OTHelper.stringTypedValue(rsColumns.getString(i)));
+        /* Wait for every lane, on timeout no lane takes further tables and running ones are cancelled */
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TABLES_METADATA_TIMEOUT_SECONDS);
+        for (Future<?> future : futures) {
+            try {
+                future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                for (ConcurrentLinkedQueue<Integer> queue : queues.values()) {
+                    queue.clear();
                 }
+                future.cancel(true);
+            }
+        }
 
-                resultList.add(row);
-            } while (rsColumns.next());
+        /* Results in input order, only of tables done before the timeout */
+        Map<?, ?>[] result = new Map[tableNames.length];
+        for (int i = 0; i < tableNames.length; i++) {
+            Map<Object, Object> row = new LinkedHashMap<>();
+            row.put(OTHelper.stringTypedValue("dataSource"),
+                    OTHelper.stringTypedValue(dataSourceOf(dataSources, i)));
+            row.put(OTHelper.stringTypedValue("tableName"), OTHelper.stringTypedValue(tableNames[i]));
+            boolean isDone = done.get(i) == 1;
+            String error = errors.get(i);
+            if (error == null && !isDone) {
+                error = "Timed out";
+            }
+            row.put(OTHelper.stringTypedValue("metadata"), isDone ? metadata.get(i) : null);
+            row.put(OTHelper.stringTypedValue("error"), OTHelper.stringTypedValue(error));
+            result[i] = row;
+        }
+
+        /* Return list of dictionaries */
+        return new TypedValue((long) AppianType.LIST_OF_MAP, result);
+    }
+
+    @Function
+    public Long otInvalidateTableMetadata(
+            @Parameter(required = false) @Name("dataSource") String dataSource,
+            @Parameter(required = false) @Name("tableName") String tableName) {
+
+        /* Number of invalidated entries */
+        return OTMetadataCache.invalidate(dataSource, tableName);
+    }
+
+    @Function
+    public TypedValue otGetTableMetadataCacheStats() {
+
+        /* Hits, misses, evictions and size */
+        return new TypedValue((long) AppianType.MAP, OTMetadataCache.createStatsMap());
+    }
+
+    @Function
+    public Long otSaveMetadataSnapshot() {
+
+        try {
+            /* Number of entries written to the snapshot file */
+            OTSnapshotStore.load();
+            return OTSnapshotStore.save();
         } catch (Exception e) {
             OTHelper.logError(e.getMessage());
             return null;
-        } finally {
-            if (rsColumns != null) {
-                try {
-                    rsColumns.close();
-                } catch (SQLException e) { /* Ignored */}
+        }
+    }
+
+    @Function
+    public Long otInvalidateDataSource(
+            @Parameter(required = false) @Name("dataSource") String dataSource) {
+
+        /* Number of dropped handles */
+        return OTDataSourceCache.invalidate(dataSource);
+    }
+
+    @Function
+    public TypedValue otGetDataSourceStats() {
+
+        /* Lookups and connection timings per data source */
+        return new TypedValue((long) AppianType.LIST_OF_MAP, OTDataSourceCache.createStatsMaps());
+    }
+
+    @Function
+    public TypedValue otGetTableStats(
+            Context ctx,
+            @Parameter @Name("dataSource") String dataSource,
+            @Parameter @Name("tableNames") String[] tableNames,
+            @Parameter(required = false) @Name("cacheTtl") Long cacheTtl,
+            @Parameter(required = false) @Name("countCap") Long countCap,
+            @Parameter(required = false) @Name("maxConcurrency") Long maxConcurrency) {
+
+        /* Tables are required */
+        if (tableNames == null) {
+            OTHelper.logError("tableNames is required");
+            return null;
+        }
+
+        /* Vars */
+        int lanes = maxConcurrency == null || maxConcurrency < 1 ? OTExecutor.MAX_DATA_SOURCE_CONCURRENCY
+                : (int) Math.min(maxConcurrency, OTExecutor.MAX_DATA_SOURCE_CONCURRENCY);
+        OTTableStats[] stats = new OTTableStats[tableNames.length];
+        String[] errors = new String[tableNames.length];
+
+        try {
+            /* Catalog statistics or capped counts, tables run concurrently within the data source limit */
+            OTTableStats.collect(OTHelper.getDataSource(ctx, dataSource), dataSource, tableNames, cacheTtl,
+                    countCap == null || countCap <= 0 ? OTTableStats.DEFAULT_COUNT_CAP : countCap, lanes, stats,
+                    errors);
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        }
+
+        /* Results in input order, counts and sizes as decimals since they overflow integers */
+        Map<?, ?>[] result = new Map[tableNames.length];
+        for (int i = 0; i < tableNames.length; i++) {
+            Map<Object, Object> row = new LinkedHashMap<>();
+            OTTableStats tableStats = stats[i];
+            row.put(OTHelper.stringTypedValue("tableName"), OTHelper.stringTypedValue(tableNames[i]));
+            row.put(OTHelper.stringTypedValue("rowCount"), OTHelper.doubleTypedValue(
+                    tableStats == null ? null : tableStats.getRowCount().doubleValue()));
+            row.put(OTHelper.stringTypedValue("sizeBytes"), OTHelper.doubleTypedValue(
+                    tableStats == null || tableStats.getSizeBytes() == null ? null
+                            : tableStats.getSizeBytes().doubleValue()));
+            row.put(OTHelper.stringTypedValue("source"),
+                    OTHelper.stringTypedValue(tableStats == null ? null : tableStats.getSource()));
+            row.put(OTHelper.stringTypedValue("exact"),
+                    OTHelper.booleanTypedValue(tableStats == null ? null : tableStats.isExact()));
+            row.put(OTHelper.stringTypedValue("error"), OTHelper.stringTypedValue(errors[i]));
+            result[i] = row;
+        }
+
+        /* Return list of dictionaries */
+        return new TypedValue((long) AppianType.LIST_OF_MAP, result);
+    }
+
+    @Function
+    public Long otInvalidateTableStats(
+            @Parameter(required = false) @Name("dataSource") String dataSource) {
+
+        /* Number of dropped entries */
+        return OTTableStats.invalidate(dataSource);
+    }
+
+    @Function
+    public String otGetTableXsd(
+            Context ctx,
+            @Parameter @Name("dataSource") String dataSource,
+            @Parameter @Name("tableName") String tableName,
+            @Parameter @Name("targetNamespace") String targetNamespace,
+            @Parameter @Name("name") String name,
+            @Parameter @Name("description") String description,
+            @Parameter(required = false) @Name("includeIndexes") Boolean includeIndexes) {
+
+        /* XSD of the table */
+        return OTHelper.getTableXsd(ctx, dataSource, tableName, targetNamespace, name, description,
+                includeIndexes != null && includeIndexes);
+    }
+
+    @Function
+    public String otGetDataSourceXsd(
+            Context ctx,
+            @Parameter @Name("dataSource") String dataSource,
+            @Parameter @Name("targetNamespace") String targetNamespace,
+            @Parameter(required = false) @Name("namePrefix") String namePrefix,
+            @Parameter(required = false) @Name("includePattern") String includePattern,
+            @Parameter(required = false) @Name("excludePattern") String excludePattern) {
+
+        /* XSD of every table of the data source */
+        return OTHelper.getDataSourceXsd(ctx, dataSource, targetNamespace, namePrefix, includePattern,
+                excludePattern);
+    }
+
+    @Function
+    public String otGetRelationalXsd(
+            Context ctx,
+            @Parameter @Name("dataSource") String dataSource,
+            @Parameter @Name("tableName") String tableName,
+            @Parameter @Name("targetNamespace") String targetNamespace,
+            @Parameter(required = false) @Name("namePrefix") String namePrefix,
+            @Parameter(required = false) @Name("depth") Long depth,
+            @Parameter(required = false) @Name("schema") String schema,
+            @Parameter(required = false) @Name("cacheTtl") Long cacheTtl) {
+
+        /* XSD of the table with nested types of related tables, one level by default */
+        return OTHelper.getRelationalXsd(ctx, dataSource, tableName, targetNamespace, namePrefix,
+                depth == null || depth < 0 ? 1 : depth.intValue(), schema, cacheTtl);
+    }
+
+    @Function
+    public TypedValue otGetTableRelations(
+            Context ctx,
+            @Parameter @Name("dataSource") String dataSource,
+            @Parameter(required = false) @Name("tableName") String tableName,
+            @Parameter(required = false) @Name("schema") String schema,
+            @Parameter(required = false) @Name("cacheTtl") Long cacheTtl) {
+
+        try {
+            /* Relations of the table, every relation of the schema when null */
+            OTRelationGraph graph = OTRelationGraph.get(ctx, dataSource, schema, cacheTtl);
+            List<OTRelationGraph.Relation> relations = graph.getRelations();
+            if (tableName != null) {
+                relations = new ArrayList<>(graph.getImported(tableName));
+                relations.addAll(graph.getExported(tableName));
+            }
+
+            /* One dictionary per foreign key */
+            Map<?, ?>[] result = new Map[relations.size()];
+            for (int i = 0; i < result.length; i++) {
+                OTRelationGraph.Relation relation = relations.get(i);
+                Map<Object, Object> map = new LinkedHashMap<>();
+                map.put(OTHelper.stringTypedValue("name"), OTHelper.stringTypedValue(relation.getName()));
+                map.put(OTHelper.stringTypedValue("fkTable"), OTHelper.stringTypedValue(relation.getFkTable()));
+                map.put(OTHelper.stringTypedValue("fkColumns"), new TypedValue((long) AppianType.LIST_OF_STRING,
+                        relation.getFkColumns().toArray(new String[0])));
+                map.put(OTHelper.stringTypedValue("pkTable"), OTHelper.stringTypedValue(relation.getPkTable()));
+                map.put(OTHelper.stringTypedValue("pkColumns"), new TypedValue((long) AppianType.LIST_OF_STRING,
+                        relation.getPkColumns().toArray(new String[0])));
+                result[i] = map;
             }
+            return new TypedValue((long) AppianType.LIST_OF_MAP, result);
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        }
+    }
+
+    @Function
+    public TypedValue otGetTableKeys(
+            Context ctx,
+            @Parameter @Name("dataSource") String dataSource,
+            @Parameter @Name("tableName") String tableName,
+            @Parameter(required = false) @Name("schema") String schema,
+            @Parameter(required = false) @Name("includeIndexes") Boolean includeIndexes) {
+
+        /* Vars */
+        Connection conn = null;
+        Map<Object, Object> result = new LinkedHashMap<>();
+
+        try {
+            /* Connection to db */
+            conn = OTHelper.getConnection(ctx, dataSource);
+
+            /* Primary key and indexes */
+            OTTableKeys keys = OTTableKeys.read(conn, schema == null || schema.isEmpty() ? null : schema, tableName,
+                    includeIndexes == null || includeIndexes);
+            Map<?, ?>[] indexes = new Map[keys.getIndexes().size()];
+            for (int i = 0; i < indexes.length; i++) {
+                OTTableKeys.Index index = keys.getIndexes().get(i);
+                Map<Object, Object> map = new LinkedHashMap<>();
+                map.put(OTHelper.stringTypedValue("name"), OTHelper.stringTypedValue(index.getName()));
+                map.put(OTHelper.stringTypedValue("unique"), OTHelper.booleanTypedValue(index.isUnique()));
+                map.put(OTHelper.stringTypedValue("columns"), new TypedValue((long) AppianType.LIST_OF_STRING,
+                        index.getColumns().toArray(new String[0])));
+                indexes[i] = map;
+            }
+            result.put(OTHelper.stringTypedValue("primaryKeyName"),
+                    OTHelper.stringTypedValue(keys.getPrimaryKeyName()));
+            result.put(OTHelper.stringTypedValue("primaryKey"), new TypedValue((long) AppianType.LIST_OF_STRING,
+                    keys.getPrimaryKey().toArray(new String[0])));
+            result.put(OTHelper.stringTypedValue("indexes"), new TypedValue((long) AppianType.LIST_OF_MAP, indexes));
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        } finally {
             if (conn != null) {
                 try {
                     conn.close();
@@ -83,60 +429,114 @@ public class OTDatabase {
             }
         }
 
-        /* Return list of dictionaries */
-        return new TypedValue((long) AppianType.LIST_OF_MAP, resultList.toArray(new Map[resultList.size()]));
+        /* Return dictionary */
+        return new TypedValue((long) AppianType.MAP, result);
     }
 
     @Function
-    public String otGetTableXsd(
+    public Long otInvalidateTableRelations(
+            @Parameter(required = false) @Name("dataSource") String dataSource) {
+
+        /* Number of dropped graphs */
+        return OTRelationGraph.invalidate(dataSource);
+    }
+
+    @Function
+    public Long[] otUpdateDataType(
             Context ctx,
+            ServiceContext sc,
+            TypeService ts,
             @Parameter @Name("dataSource") String dataSource,
             @Parameter @Name("tableName") String tableName,
             @Parameter @Name("targetNamespace") String targetNamespace,
             @Parameter @Name("name") String name,
-            @Parameter @Name("description") String description) {
+            @Parameter @Name("description") String description,
+            @Parameter(required = false) @Name("force") Boolean force) {
+        
+        /* Sync */
+        OTDataTypeSync.Result result = syncDataType(ctx, sc, ts, dataSource, tableName, targetNamespace, name,
+                description, force);
 
-        /* XSD of the table */
-        return OTHelper.getTableXsd(ctx, dataSource, tableName, targetNamespace, name, description);
+        /* Return list of type ids */
+        return result == null ? null : result.getTypeIds();
     }
 
     @Function
-    public Long[] otUpdateDataType(
+    public TypedValue otSyncDataType(
             Context ctx,
             ServiceContext sc,
+            TypeService ts,
             @Parameter @Name("dataSource") String dataSource,
             @Parameter @Name("tableName") String tableName,
             @Parameter @Name("targetNamespace") String targetNamespace,
             @Parameter @Name("name") String name,
-            @Parameter @Name("description") String description) {
-        
+            @Parameter @Name("description") String description,
+            @Parameter(required = false) @Name("force") Boolean force) {
+
+        /* Sync */
+        OTDataTypeSync.Result result = syncDataType(ctx, sc, ts, dataSource, tableName, targetNamespace, name,
+                description, force);
+
+        /* Exit if null */
+        if (result == null) {
+            return null;
+        }
+
+        /* Type ids, whether a new version was imported and the fingerprint of the xsd */
+        Map<Object, Object> map = new LinkedHashMap<>();
+        map.put(OTHelper.stringTypedValue("typeIds"),
+                new TypedValue((long) AppianType.LIST_OF_INTEGER, result.getTypeIds()));
+        map.put(OTHelper.stringTypedValue("changed"), OTHelper.booleanTypedValue(result.isChanged()));
+        map.put(OTHelper.stringTypedValue("fingerprint"), OTHelper.stringTypedValue(result.getFingerprint()));
+        return new TypedValue((long) AppianType.MAP, map);
+    }
+
+    /* Imports the xsd of the table unless it matches the last import */
+    private OTDataTypeSync.Result syncDataType(Context ctx, ServiceContext sc, TypeService ts, String dataSource,
+            String tableName, String targetNamespace, String name, String description, Boolean force) {
+
         /* XSD of the table */
-        String xsd = OTHelper.getTableXsd(ctx, dataSource, tableName, targetNamespace, name, description);
+        byte[] xsd = OTHelper.getTableXsdBytes(ctx, dataSource, tableName, targetNamespace, name, description);
 
         /* Exit if null */
         if (xsd == null) {
             return null;
         }
-        
+
         try {
-            /* Create input stream from xsd string */
-            InputStream stream = new ByteArrayInputStream(xsd.getBytes(StandardCharsets.UTF_8));
+            /* Import xsd to Appian when changed */
+            return OTDataTypeSync.sync(ts, sc, xsd, targetNamespace, name, force != null && force);
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        }
+    }
 
-            /* Import xsd to Appian */
-            ImportResult ir = XsdTypeImporter.importFromStream(stream, true, sc);
+    @Function
+    public Boolean otRegisterTypeMapping(
+            @Parameter(required = false) @Name("dialect") String dialect,
+            @Parameter @Name("typeName") String typeName,
+            @Parameter @Name("xmlType") String xmlType) {
 
-            /* Return list of type ids */
-            return Arrays.stream(ir.getNewDatatypes()).map(d -> d.getId()).toArray(Long[]::new);
+        try {
+            /* Mapping used by xsd generation, a null dialect applies to every data source */
+            OTTypeRegistry.registerCustom(dialect == null ? null : OTTypeRegistry.getDialect(dialect), typeName,
+                    xmlType);
+            return true;
         } catch (Exception e) {
             OTHelper.logError(e.getMessage());
-            return null;
+            return false;
         }
     }
 
     @Function
     public String[] otGetDataSourceTables(
             Context ctx,
-            @Parameter @Name("dataSource") String dataSource) {
+            @Parameter @Name("dataSource") String dataSource,
+            @Parameter(required = false) @Name("catalog") String catalog,
+            @Parameter(required = false) @Name("schemaPattern") String schemaPattern,
+            @Parameter(required = false) @Name("tableNamePattern") String tableNamePattern,
+            @Parameter(required = false) @Name("tableTypes") String[] tableTypes) {
         
         /* Vars */
         Connection conn = null;
@@ -148,7 +548,7 @@ public class OTDatabase {
             conn = OTHelper.getConnection(ctx, dataSource);
 
             /* Get tables of the data source */
-            rsTables = OTHelper.getTablesOfDataSource(conn);
+            rsTables = OTHelper.getTablesOfDataSource(conn, catalog, schemaPattern, tableNamePattern, tableTypes);
 
             /* Return early if empty */
             if (rsTables.next() == false) {
@@ -179,4 +579,405 @@ public class OTDatabase {
         /* Return list */
         return result.toArray(new String[0]);
     }
+
+    @Function
+    public TypedValue otGetDataSourceTablesPage(
+            Context ctx,
+            @Parameter @Name("dataSource") String dataSource,
+            @Parameter(required = false) @Name("catalog") String catalog,
+            @Parameter(required = false) @Name("schemaPattern") String schemaPattern,
+            @Parameter(required = false) @Name("tableNamePattern") String tableNamePattern,
+            @Parameter(required = false) @Name("tableTypes") String[] tableTypes,
+            @Parameter(required = false) @Name("offset") Long offset,
+            @Parameter(required = false) @Name("limit") Long limit,
+            @Parameter(required = false) @Name("countOnly") Boolean countOnly) {
+
+        /* Vars */
+        Connection conn = null;
+        ResultSet rsTables = null;
+        Map<Object, Object> result = new LinkedHashMap<>();
+        long start = offset == null || offset < 0 ? 0 : offset;
+        long size = limit == null || limit <= 0 ? 100 : limit;
+
+        try {
+            /* Connection to db */
+            conn = OTHelper.getConnection(ctx, dataSource);
+
+            /* Get tables of the data source */
+            rsTables = OTHelper.getTablesOfDataSource(conn, catalog, schemaPattern, tableNamePattern, tableTypes);
+
+            /* Count without reading names */
+            if (countOnly != null && countOnly) {
+                long count = 0;
+                while (rsTables.next()) {
+                    count++;
+                }
+                result.put(OTHelper.stringTypedValue("count"), OTHelper.intTypedValue(count));
+                return new TypedValue((long) AppianType.MAP, result);
+            }
+
+            /* Skip rows before the page */
+            long position = 0;
+            boolean hasRow = rsTables.next();
+            while (hasRow && position < start) {
+                hasRow = rsTables.next();
+                position++;
+            }
+
+            /* Read the page, the cursor is left open past it */
+            ArrayList<String> tables = new ArrayList<>();
+            while (hasRow && tables.size() < size) {
+                tables.add(rsTables.getString("TABLE_NAME"));
+                hasRow = rsTables.next();
+            }
+
+            /* Page and next offset, null when there are no more tables */
+            result.put(OTHelper.stringTypedValue("tables"),
+                    new TypedValue((long) AppianType.LIST_OF_STRING, tables.toArray(new String[0])));
+            result.put(OTHelper.stringTypedValue("offset"), OTHelper.intTypedValue(start));
+            result.put(OTHelper.stringTypedValue("nextOffset"),
+                    OTHelper.intTypedValue(hasRow ? start + tables.size() : null));
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        } finally {
+            if (rsTables != null) {
+                try {
+                    rsTables.close();
+                } catch (SQLException e) { /* Ignored */}
+            }
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) { /* Ignored */}
+            }
+        }
+
+        /* Return dictionary */
+        return new TypedValue((long) AppianType.MAP, result);
+    }
+
+    @Function
+    public TypedValue otQueryDataSource(
+            Context ctx,
+            @Parameter @Name("dataSource") String dataSource,
+            @Parameter @Name("sql") String sql,
+            @Parameter(required = false) @Name("params") TypedValue params,
+            @Parameter(required = false) @Name("maxRows") Long maxRows,
+            @Parameter(required = false) @Name("fetchSize") Long fetchSize) {
+
+        /* Queries only */
+        if (!OTQuery.isReadOnly(sql)) {
+            OTHelper.logError("Only a single select statement is allowed");
+            return null;
+        }
+
+        /* Vars */
+        Connection conn = null;
+        Boolean wasReadOnly = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        OTQuery.Rows rows = null;
+        int limit = OTQuery.rowLimit(maxRows);
+
+        try {
+            /* Connection to db */
+            conn = OTHelper.getConnection(ctx, dataSource);
+            wasReadOnly = conn.isReadOnly();
+            conn.setReadOnly(true);
+
+            /* Statement, one row more than the limit to detect truncation */
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setMaxRows(limit + 1);
+            ps.setFetchSize(fetchSize == null || fetchSize <= 0 ? OTQuery.DEFAULT_FETCH_SIZE
+                    : (int) Math.min(fetchSize, limit));
+            OTQuery.bind(ps, OTQuery.toParams(params));
+
+            /* Stream rows up to the caps */
+            rs = ps.executeQuery();
+            rows = OTQuery.readRows(rs, OTTypeRegistry.getDialect(conn), limit, OTQuery.MAX_BYTES);
+            if (rows.isTruncated()) {
+                OTHelper.logError("Query on " + dataSource + " truncated to " + rows.getRows().size() + " rows");
+            }
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException e) { /* Ignored */}
+            }
+            if (ps != null) {
+                try {
+                    ps.close();
+                } catch (SQLException e) { /* Ignored */}
+            }
+            if (conn != null) {
+                /* Pooled connection goes back as it came */
+                if (wasReadOnly != null) {
+                    try {
+                        conn.setReadOnly(wasReadOnly);
+                    } catch (SQLException e) { /* Ignored */}
+                }
+                try {
+                    conn.close();
+                } catch (SQLException e) { /* Ignored */}
+            }
+        }
+
+        /* Return list of dictionaries */
+        return new TypedValue((long) AppianType.LIST_OF_MAP, rows.toArray());
+    }
+
+    @Function
+    public TypedValue otGetTablePage(
+            Context ctx,
+            @Parameter @Name("dataSource") String dataSource,
+            @Parameter @Name("tableName") String tableName,
+            @Parameter(required = false) @Name("keyColumns") String[] keyColumns,
+            @Parameter(required = false) @Name("columns") String[] columns,
+            @Parameter(required = false) @Name("pageSize") Long pageSize,
+            @Parameter(required = false) @Name("cursor") String cursor) {
+
+        /* Vars */
+        Connection conn = null;
+        Boolean wasReadOnly = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        Map<Object, Object> result = new LinkedHashMap<>();
+        int limit = pageSize == null || pageSize <= 0 ? 100 : OTQuery.rowLimit(pageSize);
+
+        try {
+            /* Connection to db */
+            conn = OTHelper.getConnection(ctx, dataSource);
+            wasReadOnly = conn.isReadOnly();
+            conn.setReadOnly(true);
+
+            /* Columns of the table by upper case name */
+            Map<String, String> tableColumns = new LinkedHashMap<>();
+            rs = OTHelper.getColumnsOfTable(conn, tableName);
+            while (rs.next()) {
+                String columnName = rs.getString("COLUMN_NAME");
+                tableColumns.put(columnName.toUpperCase(), columnName);
+            }
+            rs.close();
+            rs = null;
+            if (tableColumns.isEmpty()) {
+                throw new IllegalArgumentException("Table " + tableName + " not found in " + dataSource);
+            }
+
+            /* Key columns, the primary key by default */
+            String[] keys = keyColumns == null || keyColumns.length == 0
+                    ? OTHelper.getPrimaryKeyColumns(conn, tableName)
+                    : keyColumns;
+            if (keys.length == 0) {
+                throw new IllegalArgumentException("Table " + tableName + " has no primary key, keyColumns needed");
+            }
+            keys = resolveColumns(tableColumns, keys);
+
+            /* Selected columns, keys are always read */
+            List<String> selected = new ArrayList<>(columns == null || columns.length == 0 ? tableColumns.values()
+                    : Arrays.asList(resolveColumns(tableColumns, columns)));
+            int[] keyIndexes = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                if (!selected.contains(keys[i])) {
+                    selected.add(keys[i]);
+                }
+                keyIndexes[i] = selected.indexOf(keys[i]) + 1;
+            }
+
+            /* Statement, one row more than the page to detect the last page */
+            boolean hasCursor = cursor != null && !cursor.isEmpty();
+            String dialect = OTTypeRegistry.getDialect(conn);
+            String sql = OTKeyset.buildQuery(dialect, conn.getMetaData().getIdentifierQuoteString(), tableName,
+                    selected, keys, hasCursor, limit + 1);
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setMaxRows(limit + 1);
+            ps.setFetchSize(Math.min(limit + 1, OTQuery.DEFAULT_FETCH_SIZE));
+            if (hasCursor) {
+                OTQuery.bind(ps, OTKeyset.predicateParams(OTKeyset.decodeCursor(cursor, tableName, keys)));
+            }
+
+            /* Page and cursor of its last row, null on the last page */
+            rs = ps.executeQuery();
+            OTQuery.Rows rows = OTQuery.readRows(rs, dialect, limit, OTQuery.MAX_BYTES, keyIndexes);
+            result.put(OTHelper.stringTypedValue("rows"), new TypedValue((long) AppianType.LIST_OF_MAP,
+                    rows.toArray()));
+            result.put(OTHelper.stringTypedValue("nextCursor"), OTHelper.stringTypedValue(rows.isTruncated()
+                    ? OTKeyset.encodeCursor(tableName, keys, rows.getLastKey())
+                    : null));
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException e) { /* Ignored */}
+            }
+            if (ps != null) {
+                try {
+                    ps.close();
+                } catch (SQLException e) { /* Ignored */}
+            }
+            if (conn != null) {
+                /* Pooled connection goes back as it came */
+                if (wasReadOnly != null) {
+                    try {
+                        conn.setReadOnly(wasReadOnly);
+                    } catch (SQLException e) { /* Ignored */}
+                }
+                try {
+                    conn.close();
+                } catch (SQLException e) { /* Ignored */}
+            }
+        }
+
+        /* Return dictionary */
+        return new TypedValue((long) AppianType.MAP, result);
+    }
+
+    /* Actual names of the given columns, unknown columns are rejected */
+    private String[] resolveColumns(Map<String, String> tableColumns, String[] names) {
+        String[] resolved = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            resolved[i] = names[i] == null ? null : tableColumns.get(names[i].toUpperCase());
+            if (resolved[i] == null) {
+                throw new IllegalArgumentException("Unknown column " + names[i]);
+            }
+        }
+        return resolved;
+    }
+
+    @Function
+    public Long otCreateSchemaSnapshot(
+            Context ctx,
+            ContentService cs,
+            ApplicationService as,
+            @Parameter @Name("dataSource") String dataSource,
+            @Parameter @Name("name") String name,
+            @Parameter @Name("folder") @FolderDataType Long folder,
+            @Parameter(required = false) @Name("includePattern") String includePattern,
+            @Parameter(required = false) @Name("excludePattern") String excludePattern,
+            @Parameter(required = false) @Name("application") @ApplicationDataType Long application) {
+
+        /* Vars */
+        Connection conn = null;
+        OTSchemaSnapshot snapshot = null;
+
+        try {
+            /* Connection to db */
+            conn = OTHelper.getConnection(ctx, dataSource);
+
+            /* Columns and keys of every table */
+            snapshot = OTSchemaSnapshot.capture(conn, includePattern, excludePattern);
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) { /* Ignored */}
+            }
+        }
+
+        try {
+            /* Create document */
+            Document doc = new Document(folder, name, "txt");
+            doc.setDescription("Schema snapshot of " + dataSource);
+            doc.setSecurity(ContentConstants.SEC_INH_ALL);
+
+            /* Upload to Appian and write snapshot */
+            ContentUploadOutputStream outStr = cs.uploadDocument(doc, ContentConstants.UNIQUE_FOR_ALL);
+            try {
+                snapshot.write(outStr, dataSource);
+            } finally {
+                outStr.close();
+            }
+
+            /* Add to application and return documentId */
+            Long documentId = outStr.getContentId();
+            OTHelper.addContentToApplication(cs, as, documentId, application);
+            return documentId;
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        }
+    }
+
+    @Function
+    public TypedValue otDiffSchemaSnapshots(
+            Context ctx,
+            ContentService cs,
+            @Parameter @Name("baseDocument") @DocumentDataType Long baseDocument,
+            @Parameter(required = false) @Name("targetDocument") @DocumentDataType Long targetDocument,
+            @Parameter(required = false) @Name("targetDataSource") String targetDataSource,
+            @Parameter(required = false) @Name("includePattern") String includePattern,
+            @Parameter(required = false) @Name("excludePattern") String excludePattern) {
+
+        /* Target is either a snapshot or a live data source */
+        if ((targetDocument == null) == (targetDataSource == null)) {
+            OTHelper.logError("Either targetDocument or targetDataSource is needed");
+            return null;
+        }
+
+        /* Vars */
+        Connection conn = null;
+        List<OTSchemaSnapshot.Change> changes = null;
+
+        try {
+            /* Snapshots, stored ones are filtered like a live capture */
+            OTSchemaSnapshot base = readSchemaSnapshot(cs, baseDocument).filter(includePattern, excludePattern);
+            OTSchemaSnapshot target;
+            if (targetDocument != null) {
+                target = readSchemaSnapshot(cs, targetDocument).filter(includePattern, excludePattern);
+            } else {
+                conn = OTHelper.getConnection(ctx, targetDataSource);
+                target = OTSchemaSnapshot.capture(conn, includePattern, excludePattern);
+            }
+
+            /* Changed tables only */
+            changes = OTSchemaSnapshot.diff(base, target);
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            return null;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) { /* Ignored */}
+            }
+        }
+
+        /* One dictionary per changed table */
+        Map<?, ?>[] result = new Map[changes.size()];
+        for (int i = 0; i < result.length; i++) {
+            OTSchemaSnapshot.Change change = changes.get(i);
+            Map<Object, Object> map = new LinkedHashMap<>();
+            map.put(OTHelper.stringTypedValue("tableName"), OTHelper.stringTypedValue(change.getTableName()));
+            map.put(OTHelper.stringTypedValue("change"), OTHelper.stringTypedValue(change.getChange()));
+            map.put(OTHelper.stringTypedValue("addedColumns"), new TypedValue((long) AppianType.LIST_OF_STRING,
+                    change.getAddedColumns().toArray(new String[0])));
+            map.put(OTHelper.stringTypedValue("removedColumns"), new TypedValue((long) AppianType.LIST_OF_STRING,
+                    change.getRemovedColumns().toArray(new String[0])));
+            map.put(OTHelper.stringTypedValue("changedColumns"), new TypedValue((long) AppianType.LIST_OF_STRING,
+                    change.getChangedColumns().toArray(new String[0])));
+            result[i] = map;
+        }
+
+        /* Return list of dictionaries */
+        return new TypedValue((long) AppianType.LIST_OF_MAP, result);
+    }
+
+    /* Snapshot stored in a document */
+    private OTSchemaSnapshot readSchemaSnapshot(ContentService cs, Long documentId) throws Exception {
+        InputStream stream = new FileInputStream(cs.getInternalFilename(documentId));
+        try {
+            return OTSchemaSnapshot.read(stream);
+        } finally {
+            stream.close();
+        }
+    }
 }
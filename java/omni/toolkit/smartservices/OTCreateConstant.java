@@ -17,6 +17,8 @@ import com.appiancorp.suiteapi.type.TypedValue;
 import com.appiancorp.type.AppianTypeLong;
 import com.appiancorp.suiteapi.process.framework.Order;
 
+import omni.toolkit.OTContentUuids;
+
 @PaletteInfo(paletteCategory = PaletteCategoryConstants.AUTOMATION_SMART_SERVICES, palette = "Omni Toolkit")
 @Order({ "Name", "Value", "Description", "Folder", "Application" })
 public class OTCreateConstant extends AppianSmartService {
@@ -52,7 +54,8 @@ public class OTCreateConstant extends AppianSmartService {
 
         try {
             this.constantId = this.contentService.create(cons, ContentConstants.UNIQUE_FOR_ALL);
-            this.constantUuid = this.contentService.getVersion(constantId, ContentConstants.VERSION_CURRENT).getUuid();
+            OTContentUuids.put(this.constantId, cons.getUuid());
+            this.constantUuid = OTContentUuids.getUuid(this.contentService, this.constantId);
             if (this.application != null) {
                 final Application appInstance = this.applicationService.getApplication(this.application);
                 appInstance.addObjectsByType(AppianTypeLong.CONTENT_ITEM, new String[] { constantUuid });
@@ -0,0 +1,93 @@
+package omni.toolkit.smartservices;
+
+import java.util.Arrays;
+
+import com.appiancorp.suiteapi.applications.ApplicationService;
+import com.appiancorp.suiteapi.common.Name;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.process.ApplicationDataType;
+import com.appiancorp.suiteapi.process.exceptions.SmartServiceException;
+import com.appiancorp.suiteapi.process.framework.AppianSmartService;
+import com.appiancorp.suiteapi.process.framework.Input;
+import com.appiancorp.suiteapi.process.framework.Required;
+import com.appiancorp.suiteapi.process.palette.PaletteCategoryConstants;
+import com.appiancorp.suiteapi.process.palette.PaletteInfo;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+
+import omni.toolkit.OTDesignObjects;
+import omni.toolkit.OTHelper;
+
+import com.appiancorp.suiteapi.process.framework.Order;
+
+@PaletteInfo(paletteCategory = PaletteCategoryConstants.AUTOMATION_SMART_SERVICES, palette = "Omni Toolkit")
+@Order({ "Definitions", "Application" })
+public class OTCreateDesignObjects extends AppianSmartService {
+
+    /* Service */
+    private final ContentService contentService;
+    private final ApplicationService applicationService;
+    private final TypeService typeService;
+
+    /* In */
+    private TypedValue definitions;
+    private Long application;
+
+    /* Out */
+    private Long[] objectIds;
+    private String[] objectUuids;
+
+    public OTCreateDesignObjects(ContentService cs, ApplicationService as, TypeService ts) {
+        this.contentService = cs;
+        this.applicationService = as;
+        this.typeService = ts;
+    }
+
+    @Override
+    public void run() throws SmartServiceException {
+        try {
+            /* Create parents first and save each application once */
+            OTDesignObjects created = OTDesignObjects.create(this.contentService, this.applicationService,
+                    this.typeService, this.definitions, this.application);
+            this.objectIds = created.getIds();
+            this.objectUuids = created.getUuids();
+
+            /* The node fails, the log keeps the ids created before the error */
+            if (created.getError() != null) {
+                OTHelper.logError("Design objects created before the failure: " + Arrays.toString(this.objectIds));
+                throw created.getError();
+            }
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            throw createException(e);
+        }
+    }
+
+    @Name("objectIds")
+    public Long[] getObjectIds() {
+        return this.objectIds;
+    }
+
+    @Name("objectUuids")
+    public String[] getObjectUuids() {
+        return this.objectUuids;
+    }
+
+    @Input(required = Required.ALWAYS)
+    public void setDefinitions(TypedValue definitions) {
+        this.definitions = definitions;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    @ApplicationDataType
+    public void setApplication(Long application) {
+        this.application = application;
+    }
+
+    private SmartServiceException createException(Throwable t) {
+        SmartServiceException.Builder b = new SmartServiceException.Builder(getClass(), t);
+        b.userMessage(t.getMessage());
+        b.addCauseToUserMessageArgs();
+        return b.build();
+    }
+}
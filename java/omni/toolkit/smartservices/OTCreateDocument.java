@@ -5,8 +5,8 @@ import com.appiancorp.suiteapi.applications.ApplicationService;
 import com.appiancorp.suiteapi.common.Name;
 import com.appiancorp.suiteapi.content.ContentConstants;
 import com.appiancorp.suiteapi.content.ContentService;
-import com.appiancorp.suiteapi.content.ContentUploadOutputStream;
 import com.appiancorp.suiteapi.knowledge.Document;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
 import com.appiancorp.suiteapi.knowledge.FolderDataType;
 import com.appiancorp.suiteapi.process.ApplicationDataType;
 import com.appiancorp.suiteapi.process.exceptions.SmartServiceException;
@@ -17,12 +17,15 @@ import com.appiancorp.suiteapi.process.palette.PaletteCategoryConstants;
 import com.appiancorp.suiteapi.process.palette.PaletteInfo;
 import com.appiancorp.type.AppianTypeLong;
 
+import omni.toolkit.OTContentUuids;
+import omni.toolkit.OTDocumentWriter;
 import omni.toolkit.OTHelper;
 
 import com.appiancorp.suiteapi.process.framework.Order;
 
 @PaletteInfo(paletteCategory = PaletteCategoryConstants.AUTOMATION_SMART_SERVICES, palette = "Omni Toolkit")
-@Order({ "Name", "Content", "Extension", "Description", "Folder", "Application" })
+@Order({ "Name", "Content", "Extension", "Description", "Folder", "Application", "Charset", "Lines",
+        "Base64Chunks", "SourceDocument" })
 public class OTCreateDocument extends AppianSmartService {
 
     /* Service */
@@ -36,6 +39,10 @@ public class OTCreateDocument extends AppianSmartService {
     private String description;
     private Long folder;
     private Long application;
+    private String charset;
+    private String[] lines;
+    private String[] base64Chunks;
+    private Long sourceDocument;
 
     /* Out */
     private Long documentId;
@@ -53,17 +60,10 @@ public class OTCreateDocument extends AppianSmartService {
         doc.setSecurity(ContentConstants.SEC_INH_ALL);
         
         try {
-            ContentUploadOutputStream outStr = this.contentService.uploadDocument(doc, ContentConstants.UNIQUE_FOR_ALL);
-            byte[] fileContentBytes = this.content.getBytes();
-            try {
-                outStr.write(fileContentBytes);
-                outStr.flush();
-            } finally {
-                outStr.close();
-            }
-            
-            this.documentId = outStr.getContentId();
-            this.documentUuid = this.contentService.getVersion(documentId, ContentConstants.VERSION_CURRENT).getUuid();
+            this.documentId = OTDocumentWriter.upload(this.contentService, doc, this.content, this.lines,
+                    this.base64Chunks, this.sourceDocument, this.charset);
+            OTContentUuids.put(this.documentId, doc.getUuid());
+            this.documentUuid = OTContentUuids.getUuid(this.contentService, this.documentId);
             if (this.application != null) {
                 final Application appInstance = this.applicationService.getApplication(this.application);
                 appInstance.addObjectsByType(AppianTypeLong.CONTENT_ITEM, new String[] { documentUuid });
@@ -90,7 +90,7 @@ public class OTCreateDocument extends AppianSmartService {
         this.name = name;
     }
 
-    @Input(required = Required.ALWAYS)
+    @Input(required = Required.OPTIONAL)
     public void setContent(String content) {
         this.content = content;
     }
@@ -117,6 +117,27 @@ public class OTCreateDocument extends AppianSmartService {
         this.application = application;
     }
 
+    @Input(required = Required.OPTIONAL)
+    public void setCharset(String charset) {
+        this.charset = charset;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    public void setLines(String[] lines) {
+        this.lines = lines;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    public void setBase64Chunks(String[] base64Chunks) {
+        this.base64Chunks = base64Chunks;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    @DocumentDataType
+    public void setSourceDocument(Long sourceDocument) {
+        this.sourceDocument = sourceDocument;
+    }
+
 	private SmartServiceException createException(Throwable t) {
 		SmartServiceException.Builder b = new SmartServiceException.Builder(getClass(), t);
 		b.userMessage(t.getMessage());
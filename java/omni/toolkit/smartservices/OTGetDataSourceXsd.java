@@ -0,0 +1,75 @@
+package omni.toolkit.smartservices;
+
+import javax.naming.Context;
+
+import com.appiancorp.suiteapi.common.Name;
+import com.appiancorp.suiteapi.process.exceptions.SmartServiceException;
+import com.appiancorp.suiteapi.process.framework.AppianSmartService;
+import com.appiancorp.suiteapi.process.framework.Input;
+import com.appiancorp.suiteapi.process.framework.Required;
+import com.appiancorp.suiteapi.process.palette.PaletteCategoryConstants;
+import com.appiancorp.suiteapi.process.palette.PaletteInfo;
+
+import omni.toolkit.OTHelper;
+
+import com.appiancorp.suiteapi.process.framework.Order;
+
+@PaletteInfo(paletteCategory = PaletteCategoryConstants.AUTOMATION_SMART_SERVICES, palette = "Omni Toolkit")
+@Order({ "Data Source", "Target Namespace", "Name Prefix", "Include Pattern", "Exclude Pattern" })
+public class OTGetDataSourceXsd extends AppianSmartService {
+
+    /* Service */
+    private final Context context;
+
+    /* In */
+    private String dataSource;
+    private String targetNamespace;
+    private String namePrefix;
+    private String includePattern;
+    private String excludePattern;
+
+    /* Out */
+    private String xsd;
+
+    public OTGetDataSourceXsd(Context ctx) {
+        this.context = ctx;
+    }
+
+    @Override
+    public void run() throws SmartServiceException {
+
+        /* XSD of every table of the data source */
+        this.xsd = OTHelper.getDataSourceXsd(this.context, this.dataSource, this.targetNamespace, this.namePrefix,
+                this.includePattern, this.excludePattern);
+    }
+
+    @Name("xsd")
+    public String getXsd() {
+        return this.xsd;
+    }
+
+    @Input(required = Required.ALWAYS)
+    public void setDataSource(String dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Input(required = Required.ALWAYS)
+    public void setTargetNamespace(String targetNamespace) {
+        this.targetNamespace = targetNamespace;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    public void setNamePrefix(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    public void setIncludePattern(String includePattern) {
+        this.includePattern = includePattern;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    public void setExcludePattern(String excludePattern) {
+        this.excludePattern = excludePattern;
+    }
+}
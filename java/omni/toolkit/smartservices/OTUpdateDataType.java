@@ -1,9 +1,5 @@
 package omni.toolkit.smartservices;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-
 import javax.naming.Context;
 
 import com.appiancorp.services.ServiceContext;
@@ -14,21 +10,21 @@ import com.appiancorp.suiteapi.process.framework.Input;
 import com.appiancorp.suiteapi.process.framework.Required;
 import com.appiancorp.suiteapi.process.palette.PaletteCategoryConstants;
 import com.appiancorp.suiteapi.process.palette.PaletteInfo;
-import com.appiancorp.suiteapi.type.Datatype;
-import com.appiancorp.suiteapi.type.config.ImportResult;
-import com.appiancorp.suiteapi.type.config.xsd.XsdTypeImporter;
+import com.appiancorp.suiteapi.type.TypeService;
 
+import omni.toolkit.OTDataTypeSync;
 import omni.toolkit.OTHelper;
 
 import com.appiancorp.suiteapi.process.framework.Order;
 
 @PaletteInfo(paletteCategory = PaletteCategoryConstants.AUTOMATION_SMART_SERVICES, palette = "Omni Toolkit")
-@Order({ "Data Source", "Table Name", "Target Namespace", "Name", "Description", })
+@Order({ "Data Source", "Table Name", "Target Namespace", "Name", "Description", "Force", })
 public class OTUpdateDataType extends AppianSmartService {
 
     /* Service */
     private final Context context;
     private final ServiceContext serviceContext;
+    private final TypeService typeService;
 
     /* In */
     private String dataSource;
@@ -36,38 +32,36 @@ public class OTUpdateDataType extends AppianSmartService {
     private String targetNamespace;
     private String name;
     private String description;
+    private Boolean force;
 
     /* Out */
     private Long typeId;
+    private Boolean changed;
 
-    public OTUpdateDataType(Context ctx, ServiceContext sc) {
+    public OTUpdateDataType(Context ctx, ServiceContext sc, TypeService ts) {
         this.context = ctx;
         this.serviceContext = sc;
+        this.typeService = ts;
     }
 
     @Override
     public void run() throws SmartServiceException {
 
         /* XSD of the table */
-        String xsd = OTHelper.getTableXsd(this.context, this.dataSource, this.tableName, this.targetNamespace,
+        byte[] xsd = OTHelper.getTableXsdBytes(this.context, this.dataSource, this.tableName, this.targetNamespace,
                 this.name, this.description);
 
         try {
 
             /* Exit if null */
             if (xsd != null) {
-                /* Create input stream from xsd string */
-                InputStream stream = new ByteArrayInputStream(xsd.getBytes(StandardCharsets.UTF_8));
-
-                /* Import xsd to Appian */
-                ImportResult ir = XsdTypeImporter.importFromStream(stream, true, this.serviceContext);
-                Datatype[] dts = ir.getNewDatatypes();
-                Long[] r = new Long[dts.length];
-                for (int i = 0; i < r.length; i++) {
-                    r[i] = dts[i].getId();
-                }
+                /* Import xsd to Appian when changed */
+                OTDataTypeSync.Result result = OTDataTypeSync.sync(this.typeService, this.serviceContext, xsd,
+                        this.targetNamespace, this.name, this.force != null && this.force);
+                Long[] r = result.getTypeIds();
 
                 this.typeId = r[0];
+                this.changed = result.isChanged();
             }
         } catch (Exception e) {
             OTHelper.logError(e.getMessage());
@@ -80,6 +74,11 @@ public class OTUpdateDataType extends AppianSmartService {
         return this.typeId;
     }
 
+    @Name("changed")
+    public Boolean getChanged() {
+        return this.changed;
+    }
+
     @Input(required = Required.ALWAYS)
     public void setDataSource(String dataSource) {
         this.dataSource = dataSource;
@@ -105,6 +104,11 @@ public class OTUpdateDataType extends AppianSmartService {
         this.description = description;
     }
 
+    @Input(required = Required.OPTIONAL)
+    public void setForce(Boolean force) {
+        this.force = force;
+    }
+
     private SmartServiceException createException(Throwable t) {
         SmartServiceException.Builder b = new SmartServiceException.Builder(getClass(), t);
         b.userMessage(t.getMessage());
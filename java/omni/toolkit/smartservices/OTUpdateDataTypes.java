@@ -0,0 +1,125 @@
+package omni.toolkit.smartservices;
+
+import javax.naming.Context;
+
+import com.appiancorp.services.ServiceContext;
+import com.appiancorp.suiteapi.common.Name;
+import com.appiancorp.suiteapi.process.exceptions.SmartServiceException;
+import com.appiancorp.suiteapi.process.framework.AppianSmartService;
+import com.appiancorp.suiteapi.process.framework.Input;
+import com.appiancorp.suiteapi.process.framework.Required;
+import com.appiancorp.suiteapi.process.palette.PaletteCategoryConstants;
+import com.appiancorp.suiteapi.process.palette.PaletteInfo;
+import com.appiancorp.suiteapi.type.TypeService;
+
+import omni.toolkit.OTDataTypeSync;
+import omni.toolkit.OTHelper;
+
+import com.appiancorp.suiteapi.process.framework.Order;
+
+@PaletteInfo(paletteCategory = PaletteCategoryConstants.AUTOMATION_SMART_SERVICES, palette = "Omni Toolkit")
+@Order({ "Data Source", "Table Names", "Target Namespace", "Names", "Descriptions", "Force", })
+public class OTUpdateDataTypes extends AppianSmartService {
+
+    /* Service */
+    private final Context context;
+    private final ServiceContext serviceContext;
+    private final TypeService typeService;
+
+    /* In */
+    private String dataSource;
+    private String[] tableNames;
+    private String targetNamespace;
+    private String[] names;
+    private String[] descriptions;
+    private Boolean force;
+
+    /* Out */
+    private Long[] typeIds;
+    private Boolean changed;
+
+    public OTUpdateDataTypes(Context ctx, ServiceContext sc, TypeService ts) {
+        this.context = ctx;
+        this.serviceContext = sc;
+        this.typeService = ts;
+    }
+
+    @Override
+    public void run() throws SmartServiceException {
+
+        try {
+            /* Names must match table names */
+            if (this.names.length != this.tableNames.length
+                    || (this.descriptions != null && this.descriptions.length != this.tableNames.length)) {
+                throw new IllegalArgumentException("Names and descriptions must hold one entry per table");
+            }
+
+            /* Single XSD for every table */
+            byte[] xsd = OTHelper.getTablesXsdBytes(this.context, this.dataSource, this.tableNames,
+                    this.targetNamespace, this.names, this.descriptions);
+
+            /* Fail the whole batch, the helper logged the cause */
+            if (xsd == null) {
+                throw new IllegalArgumentException("XSD not generated for tables "
+                        + String.join(", ", this.tableNames) + " of " + this.dataSource);
+            }
+
+            /* One import for every type, skipped when unchanged */
+            OTDataTypeSync.Result result = OTDataTypeSync.sync(this.typeService, this.serviceContext, xsd,
+                    this.targetNamespace, this.names, this.force != null && this.force);
+
+            this.typeIds = result.getTypeIds();
+            this.changed = result.isChanged();
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            throw createException(e);
+        }
+    }
+
+    @Name("typeIds")
+    public Long[] getTypeIds() {
+        return this.typeIds;
+    }
+
+    @Name("changed")
+    public Boolean getChanged() {
+        return this.changed;
+    }
+
+    @Input(required = Required.ALWAYS)
+    public void setDataSource(String dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Input(required = Required.ALWAYS)
+    public void setTableNames(String[] tableNames) {
+        this.tableNames = tableNames;
+    }
+
+    @Input(required = Required.ALWAYS)
+    public void setTargetNamespace(String targetNamespace) {
+        this.targetNamespace = targetNamespace;
+    }
+
+    @Input(required = Required.ALWAYS)
+    public void setNames(String[] names) {
+        this.names = names;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    public void setDescriptions(String[] descriptions) {
+        this.descriptions = descriptions;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    public void setForce(Boolean force) {
+        this.force = force;
+    }
+
+    private SmartServiceException createException(Throwable t) {
+        SmartServiceException.Builder b = new SmartServiceException.Builder(getClass(), t);
+        b.userMessage(t.getMessage());
+        b.addCauseToUserMessageArgs();
+        return b.build();
+    }
+}
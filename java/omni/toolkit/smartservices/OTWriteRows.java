@@ -0,0 +1,126 @@
+package omni.toolkit.smartservices;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.naming.Context;
+
+import com.appiancorp.suiteapi.common.Name;
+import com.appiancorp.suiteapi.process.exceptions.SmartServiceException;
+import com.appiancorp.suiteapi.process.framework.AppianSmartService;
+import com.appiancorp.suiteapi.process.framework.Input;
+import com.appiancorp.suiteapi.process.framework.Required;
+import com.appiancorp.suiteapi.process.palette.PaletteCategoryConstants;
+import com.appiancorp.suiteapi.process.palette.PaletteInfo;
+import com.appiancorp.suiteapi.type.TypedValue;
+
+import omni.toolkit.OTBatchWriter;
+import omni.toolkit.OTHelper;
+
+import com.appiancorp.suiteapi.process.framework.Order;
+
+@PaletteInfo(paletteCategory = PaletteCategoryConstants.AUTOMATION_SMART_SERVICES, palette = "Omni Toolkit")
+@Order({ "Data Source", "Table Name", "Rows", "Chunk Size", "Upsert", "Key Columns", })
+public class OTWriteRows extends AppianSmartService {
+
+    /* Service */
+    private final Context context;
+
+    /* In */
+    private String dataSource;
+    private String tableName;
+    private TypedValue rows;
+    private Long chunkSize;
+    private Boolean upsert;
+    private String[] keyColumns;
+
+    /* Out */
+    private Long[] chunkCounts;
+    private Long rowCount;
+
+    public OTWriteRows(Context ctx) {
+        this.context = ctx;
+    }
+
+    @Override
+    public void run() throws SmartServiceException {
+
+        /* Vars */
+        Connection conn = null;
+
+        try {
+            /* Dictionaries to write */
+            List<Map<String, Object>> values = OTBatchWriter.toRows(this.rows);
+
+            /* Connection to db */
+            conn = OTHelper.getConnection(this.context, this.dataSource);
+
+            /* Write in chunks within one transaction */
+            long[] counts = OTBatchWriter.write(conn, this.tableName, values,
+                    this.chunkSize == null ? OTBatchWriter.DEFAULT_CHUNK_SIZE : this.chunkSize.intValue(),
+                    this.upsert != null && this.upsert, this.keyColumns);
+
+            this.chunkCounts = Arrays.stream(counts).boxed().toArray(Long[]::new);
+            this.rowCount = (long) values.size();
+        } catch (Exception e) {
+            OTHelper.logError(e.getMessage());
+            throw createException(e);
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) { /* Ignored */}
+            }
+        }
+    }
+
+    @Name("chunkCounts")
+    public Long[] getChunkCounts() {
+        return this.chunkCounts;
+    }
+
+    @Name("rowCount")
+    public Long getRowCount() {
+        return this.rowCount;
+    }
+
+    @Input(required = Required.ALWAYS)
+    public void setDataSource(String dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Input(required = Required.ALWAYS)
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    @Input(required = Required.ALWAYS)
+    public void setRows(TypedValue rows) {
+        this.rows = rows;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    public void setChunkSize(Long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    public void setUpsert(Boolean upsert) {
+        this.upsert = upsert;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    public void setKeyColumns(String[] keyColumns) {
+        this.keyColumns = keyColumns;
+    }
+
+    private SmartServiceException createException(Throwable t) {
+        SmartServiceException.Builder b = new SmartServiceException.Builder(getClass(), t);
+        b.userMessage(t.getMessage());
+        b.addCauseToUserMessageArgs();
+        return b.build();
+    }
+}